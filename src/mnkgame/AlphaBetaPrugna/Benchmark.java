@@ -0,0 +1,82 @@
+package mnkgame.AlphaBetaPrugna;
+
+import mnkgame.MNKBoard;
+import mnkgame.MNKCell;
+
+/**
+ * Measures how the search scales with the number of threads.
+ *
+ * <p>Each position is searched for the given time with 1, 2, 4, ... threads
+ * up to the given maximum, both with Lazy SMP and with YBW, printing the
+ * depth reached, the nodes visited by all the threads and the nodes per
+ * second.</p>
+ *
+ * <p>Usage: <code>java mnkgame.AlphaBetaPrugna.Benchmark [seconds]
+ * [max threads]</code> (defaults: 2 seconds, available processors).</p>
+ */
+final public class Benchmark {
+  private Benchmark() {}
+
+  /** Benchmark positions: M, N, K followed by the moves as row, column. */
+  private static final int[][] POSITIONS = {
+          {7, 7, 5, 3, 3, 2, 2, 3, 2},
+          {9, 9, 5, 4, 4, 3, 3, 4, 3, 4, 5},
+          {10, 10, 5, 5, 5, 4, 4, 5, 4, 5, 6, 6, 5, 3, 3},
+          {15, 15, 5, 7, 7, 6, 8, 8, 8, 6, 6},
+  };
+
+  public static void main(String[] args) {
+    int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+    int maxThreads = args.length > 1
+            ? Integer.parseInt(args[1])
+            : Runtime.getRuntime().availableProcessors();
+
+    // An unmeasured search first, so that the JIT compiles the hot paths
+    // before the single thread runs are timed
+    for (int[] position : POSITIONS) search(position, 1, false, seconds);
+
+    System.out.format("%-10s %-7s %-5s %-7s %-12s %-10s\n", "position",
+            "threads", "mode", "depth", "nodes", "nps");
+    for (int[] position : POSITIONS) {
+      for (int threads = 1; threads <= maxThreads; threads *= 2) {
+        for (boolean ybw : new boolean[] {false, true}) {
+          if (ybw && threads == 1) continue;
+
+          long start = System.nanoTime();
+          Player player = search(position, threads, ybw, seconds);
+          long elapsed = Math.max(1, System.nanoTime() - start);
+          long nodes = player.getNodes();
+
+          System.out.format("%-10s %-7d %-5s %-7d %-12d %-10d\n",
+                  position[0] + "x" + position[1] + "x" + position[2],
+                  threads, ybw ? "ybw" : "lazy", player.getCompletedDepth(),
+                  nodes, nodes * 1_000_000_000L / elapsed);
+        }
+      }
+    }
+  }
+
+  /**
+   * Searches a benchmark position with a new player.
+   *
+   * @param position M, N, K followed by the moves as row, column
+   * @param threads number of threads of the player
+   * @param ybw use YBW instead of Lazy SMP
+   * @param seconds time of the search
+   * @return the player, after the search
+   */
+  private static Player search(
+          int[] position, int threads, boolean ybw, int seconds) {
+    int M = position[0], N = position[1], K = position[2];
+    MNKBoard board = new MNKBoard(M, N, K);
+    for (int k = 3; k < position.length; k += 2)
+      board.markCell(position[k], position[k + 1]);
+    MNKCell[] FC = board.getFreeCells();
+    MNKCell[] MC = board.getMarkedCells();
+
+    Player player = new Player(threads, ybw);
+    player.initPlayer(M, N, K, MC.length % 2 == 0, seconds);
+    player.selectCell(FC, MC);
+    return player;
+  }
+}
@@ -1,16 +1,42 @@
 package mnkgame.AlphaBetaPrugna;
 
-import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
-import mnkgame.MNKBoard;
 import mnkgame.MNKCell;
 import mnkgame.MNKCellState;
 import mnkgame.MNKGameState;
 
-final public class Board extends MNKBoard {
+/**
+ * Bitboard representation of an (M,N,K)-game board used by the search.
+ *
+ * <p>Cells are identified by their row-major index <code>i * N + j</code>.
+ * Each player owns a bitset (<code>long[]</code>) over these indexes and the
+ * history of the game is kept in an int stack, so marking and unmarking a
+ * cell never allocates. The {@link MNKCell} API is only used at the
+ * <code>selectCell</code> boundary.</p>
+ */
+final public class Board {
+  /** Board rows. */
+  public final int M;
+  /** Board columns. */
+  public final int N;
+  /** Number of symbols to be aligned for a win. */
+  public final int K;
+  /** Number of cells of the board (M * N). */
+  public final int SIZE;
+
+  /** Index of the first player. */
+  public static final int P1 = 0;
+  /** Index of the second player. */
+  public static final int P2 = 1;
+  /** Owner of a free cell. */
+  public static final int FREE = -1;
+
+  /** Line directions: horizontal, vertical, diagonal, anti-diagonal. */
+  public static final int LINES = 4;
+
   /**
    * Hash of the board.
    * It is updated when a cell is marked or unmarked.
@@ -20,8 +46,93 @@ final public class Board extends MNKBoard {
   /** Zobrist class instance. */
   public ZobristHash zobrist;
 
-  /** Board scores. */
-  public Map<MNKCell, Integer> scores = new LinkedHashMap<>();
+  /**
+   * Board scores, indexed by cell index.
+   * The array is shared by all the boards of the same size: do not modify.
+   */
+  private final int[] scores;
+
+  /** Board scores already computed, by board size. */
+  private static final Map<Long, int[]> boardScores =
+          new ConcurrentHashMap<>();
+
+  /** One bitset per player: bit <code>index</code> is set if marked. */
+  private final long[][] bits;
+
+  /** Stack of the marked cells indexes, in the order they were played. */
+  private final int[] moves;
+
+  /** Number of marked cells. */
+  private int movesCount;
+
+  /** Stack of the marked cells indexes of each player. */
+  private final int[][] playerMoves;
+
+  /** Number of marked cells of each player. */
+  private final int[] playerMovesCount;
+
+  /** Player allowed to play the next move (P1 or P2). */
+  private int currentPlayer;
+
+  /** Game state. */
+  private MNKGameState gameState;
+
+  /**
+   * Length of the runs of consecutive cells of a player along a line:
+   * <code>runs[player][line][index]</code> is only meaningful when
+   * <code>index</code> is one of the two ends of the run.
+   */
+  private final int[][][] runs;
+
+  /**
+   * Lengths of the runs merged by each move, two per line (before and after
+   * the marked cell), used to restore <code>runs</code> on unmark.
+   */
+  private final int[] mergedRuns;
+
+  /**
+   * Index of the previous/next cell along each line,
+   * -1 if it is out of bounds.
+   */
+  private final int[][] before, after;
+
+  /** Index offset of a step along each line. */
+  private final int[] steps;
+
+  /**
+   * One bitset per player of its winning cells: the free cells that would
+   * complete a line of K for the player.
+   */
+  private final long[][] winning;
+
+  /** Number of winning cells of each player. */
+  private final int[] winningCount;
+
+  /**
+   * Changes of the winning cells made by each move, used to restore them
+   * on unmark: which players had the marked cell as a winning cell, then
+   * the winning cells added by the move, two per line (-1 for none).
+   */
+  private final int[] winningUndo;
+
+  /** Slots of <code>winningUndo</code> used by each move. */
+  private static final int WINNING_UNDO = 1 + LINES * 2;
+
+  /**
+   * Max distance, in rows and columns, of the candidate cells from a stone
+   * (see {@link Settings#CANDIDATE_RADIUS}), 0 if all the free cells are
+   * candidates.
+   */
+  private final int radius;
+
+  /** Number of stones within the radius of each cell. */
+  private final int[] nearStones;
+
+  /** Bitset of the cells with at least a stone within the radius. */
+  private final long[] near;
+
+  /** Number of candidate cells: the free cells near a stone. */
+  private int candidatesCount;
 
   /** Random class instance. */
   private Random random;
@@ -31,107 +142,590 @@ final public class Board extends MNKBoard {
 
   /**
    * Board constructor.
-   * <p>Initialize the zobrist table and set board scores.</p>
+   * <p>Initialize the zobrist table and set board scores (computed once
+   * per board size).</p>
    *
    * Time complexity: O(M * N)
    *
-   * @see MNKBoard#MNKBoard(int, int, int)
+   * @param M board rows
+   * @param N board columns
+   * @param K number of symbols to be aligned for a win
+   * @throws IllegalArgumentException if M, N, K are smaller than 1
    */
-  public Board(int M, int N, int K) {
-    super(M, N, K);
+  public Board(int M, int N, int K) throws IllegalArgumentException {
+    if (M <= 0 || N <= 0 || K <= 0)
+      throw new IllegalArgumentException("M, N, K must be larger than 0");
 
-    this.setBoardScores();
+    this.M = M;
+    this.N = N;
+    this.K = K;
+    this.SIZE = M * N;
+    this.bits = new long[2][(SIZE + 63) >>> 6];
+    this.moves = new int[SIZE];
+    this.movesCount = 0;
+    this.playerMoves = new int[2][(SIZE + 1) / 2];
+    this.playerMovesCount = new int[2];
+    this.currentPlayer = P1;
+    this.gameState = MNKGameState.OPEN;
+    this.runs = new int[2][LINES][SIZE];
+    this.mergedRuns = new int[SIZE * LINES * 2];
+    this.before = new int[LINES][SIZE];
+    this.after = new int[LINES][SIZE];
+    this.steps = new int[] {1, N, N + 1, N - 1};
+    this.winning = new long[2][(SIZE + 63) >>> 6];
+    this.winningCount = new int[2];
+    this.winningUndo = new int[SIZE * WINNING_UNDO];
+    this.radius = Math.max(0, Settings.CANDIDATE_RADIUS);
+    this.nearStones = new int[SIZE];
+    this.near = new long[(SIZE + 63) >>> 6];
+
+    this.setNeighbours();
+    this.scores = boardScores.computeIfAbsent(
+            ((long) M << 32) | N, size -> computeBoardScores(M, N));
     this.zobrist = new ZobristHash(M, N);
     this.random = new Random(System.currentTimeMillis());
   }
 
   /**
-   * {@inheritDoc}
+   * Copy constructor.
+   * <p>The copy shares the zobrist table, the scores and the neighbours
+   * with the given board (they never change), so the two boards have the
+   * same hash for the same position.</p>
+   *
+   * Time complexity: O(M * N)
+   *
+   * @param other board to copy
+   */
+  public Board(Board other) {
+    this.M = other.M;
+    this.N = other.N;
+    this.K = other.K;
+    this.SIZE = other.SIZE;
+    this.bits = new long[2][other.bits[0].length];
+    this.moves = new int[SIZE];
+    this.playerMoves = new int[2][other.playerMoves[0].length];
+    this.playerMovesCount = new int[2];
+    this.runs = new int[2][LINES][SIZE];
+    this.mergedRuns = new int[other.mergedRuns.length];
+    this.winning = new long[2][other.winning[0].length];
+    this.winningCount = new int[2];
+    this.winningUndo = new int[other.winningUndo.length];
+    this.radius = other.radius;
+    this.nearStones = new int[SIZE];
+    this.near = new long[other.near.length];
+    this.before = other.before;
+    this.after = other.after;
+    this.steps = other.steps;
+    this.scores = other.scores;
+    this.zobrist = other.zobrist;
+    this.random = new Random(System.currentTimeMillis());
+
+    this.copyFrom(other);
+  }
+
+  /**
+   * Sets this board to the same position of the given one.
+   *
+   * Time complexity: O(M * N)
+   *
+   * @param other board of the same size, created by the copy constructor
+   *        (or copied) from this board
+   */
+  public void copyFrom(Board other) {
+    for (int player = P1; player <= P2; player++) {
+      System.arraycopy(
+              other.bits[player], 0, bits[player], 0, bits[player].length);
+      System.arraycopy(other.playerMoves[player], 0, playerMoves[player], 0,
+              other.playerMovesCount[player]);
+      playerMovesCount[player] = other.playerMovesCount[player];
+      System.arraycopy(other.winning[player], 0, winning[player], 0,
+              winning[player].length);
+      winningCount[player] = other.winningCount[player];
+      for (int line = 0; line < LINES; line++)
+        System.arraycopy(
+                other.runs[player][line], 0, runs[player][line], 0, SIZE);
+    }
+    System.arraycopy(other.moves, 0, moves, 0, other.movesCount);
+    System.arraycopy(other.mergedRuns, 0, mergedRuns, 0,
+            other.movesCount * LINES * 2);
+    System.arraycopy(other.winningUndo, 0, winningUndo, 0,
+            other.movesCount * WINNING_UNDO);
+    System.arraycopy(other.nearStones, 0, nearStones, 0, SIZE);
+    System.arraycopy(other.near, 0, near, 0, near.length);
+    this.candidatesCount = other.candidatesCount;
+    this.movesCount = other.movesCount;
+    this.currentPlayer = other.currentPlayer;
+    this.gameState = other.gameState;
+    this.hash = other.hash;
+  }
+
+  /**
+   * Marks the given cell for the current player.
+   * <p>Used at the <code>selectCell</code> boundary, it validates the
+   * move like {@link mnkgame.MNKBoard#markCell(int, int)} does.</p>
+   *
+   * Time complexity: O(1)
+   *
+   * @param cell cell to mark
+   * @return state of the game after the move
+   * @throws IndexOutOfBoundsException if the cell is out of bounds
+   * @throws IllegalStateException if the game ended or the cell is not free
+   */
+  public MNKGameState markCell(MNKCell cell)
+          throws IndexOutOfBoundsException, IllegalStateException {
+    if (gameState != MNKGameState.OPEN)
+      throw new IllegalStateException("Game ended!");
+    if (!isCellInBounds(cell.i, cell.j))
+      throw new IndexOutOfBoundsException(
+              "Indexes " + cell.i + "," + cell.j + " out of matrix bounds");
+    if (!isFree(index(cell.i, cell.j)))
+      throw new IllegalStateException(
+              "Cell " + cell.i + "," + cell.j + " is not free");
+
+    return markCell(index(cell.i, cell.j));
+  }
+
+  /**
+   * Marks the cell with the given index for the current player.
+   * <p>No validation is done: the cell must be free and the game open.</p>
    *
    * Time complexity: O(1)
+   *
+   * @param index row-major index of a free cell
+   * @return state of the game after the move
    */
-  public MNKGameState markCell(MNKCell cell) throws IndexOutOfBoundsException {
-    MNKGameState gameState = super.markCell(cell.i, cell.j);
-    MNKCellState markedCellState = B[cell.i][cell.j];
+  public MNKGameState markCell(int index) {
+    int player = currentPlayer;
+
+    bits[player][index >>> 6] |= 1L << index;
+    moves[movesCount++] = index;
+    playerMoves[player][playerMovesCount[player]++] = index;
+    currentPlayer = 1 - player;
 
     // XOR in the new cell
-    MNKCell newCell = new MNKCell(cell.i, cell.j, markedCellState);
-    this.hash = this.zobrist.updateZobrist(this.hash, newCell);
+    this.hash = this.zobrist.updateZobrist(this.hash, player, index);
+
+    boolean isWinning = mergeRuns(player, index);
+    updateWinningCells(player, index);
+    addNearStone(index);
+    if (isWinning)
+      gameState = player == P1 ? MNKGameState.WINP1 : MNKGameState.WINP2;
+    else if (movesCount == SIZE)
+      gameState = MNKGameState.DRAW;
 
     return gameState;
   }
 
   /**
-   * @see MNKBoard#unmarkCell()
+   * Undoes the last move.
    *
    * Time complexity: O(1)
+   *
+   * @throws IllegalStateException if there is no move to undo
    */
-  public void unmarkCell() {
-    MNKCell lastMarkedCell = MC.getLast();
-    super.unmarkCell();
+  public void unmarkCell() throws IllegalStateException {
+    if (movesCount == 0) throw new IllegalStateException("No move to undo");
+
+    int index = moves[--movesCount];
+    int player = 1 - currentPlayer;
+    playerMovesCount[player]--;
+
+    removeNearStone(index);
+    bits[player][index >>> 6] &= ~(1L << index);
+    if (nearStones[index] > 0) candidatesCount++;
+    splitRuns(player, index);
+    restoreWinningCells(player, index);
+    currentPlayer = player;
+    gameState = MNKGameState.OPEN;
 
     // XOR out the last marked cell
-    this.hash = this.zobrist.updateZobrist(this.hash, lastMarkedCell);
+    this.hash = this.zobrist.updateZobrist(this.hash, player, index);
+  }
+
+  /**
+   * Randomly select a cell from the free cells.
+   *
+   * Time complexity: O(M * N)
+   *
+   * @return index of a random free cell
+   */
+  public int pickRandomCell() {
+    int target = this.random.nextInt(getFreeCellsCount());
+
+    for (int index = 0; index < SIZE; index++)
+      if (isFree(index) && target-- == 0) return index;
+
+    return -1;
+  }
+
+  /**
+   * Returns the row-major index of the cell <code>i,j</code>.
+   *
+   * Time complexity: O(1)
+   */
+  public int index(int i, int j) { return i * N + j; }
+
+  /**
+   * Returns the row of the cell with the given index.
+   *
+   * Time complexity: O(1)
+   */
+  public int row(int index) { return index / N; }
+
+  /**
+   * Returns the column of the cell with the given index.
+   *
+   * Time complexity: O(1)
+   */
+  public int column(int index) { return index % N; }
+
+  /**
+   * Returns the owner of the cell with the given index.
+   *
+   * Time complexity: O(1)
+   *
+   * @param index row-major index of the cell
+   * @return P1, P2 or FREE
+   */
+  public int owner(int index) {
+    long mask = 1L << index;
+    int word = index >>> 6;
+
+    if ((bits[P1][word] & mask) != 0) return P1;
+    if ((bits[P2][word] & mask) != 0) return P2;
+    return FREE;
+  }
+
+  /**
+   * Returns the owner of the cell <code>i,j</code>.
+   *
+   * Time complexity: O(1)
+   *
+   * @see Board#owner(int)
+   */
+  public int owner(int i, int j) { return owner(index(i, j)); }
+
+  /**
+   * Checks if the cell with the given index is free.
+   *
+   * Time complexity: O(1)
+   */
+  public boolean isFree(int index) {
+    long mask = 1L << index;
+    int word = index >>> 6;
+    return ((bits[P1][word] | bits[P2][word]) & mask) == 0;
   }
 
   /**
-   * Randomly select a cell from the free cells list.
+   * Checks if the given player would win by marking the cell with the
+   * given index, i.e. if the cell joins runs of the player into one at
+   * least K long.
    *
    * Time complexity: O(1)
    *
-   * @return random cell from the free cells list
+   * @param player P1 or P2
+   * @param index row-major index of a free cell
+   * @return true if the cell is a winning cell for player, false otherwise
    */
-  public MNKCell pickRandomCell() {
-    MNKCell[] FC = this.getFreeCells();
-    return FC[this.random.nextInt(FC.length)];
+  public boolean isWinningCell(int player, int index) {
+    int[][] playerRuns = runs[player];
+
+    for (int line = 0; line < LINES; line++) {
+      int previous = before[line][index];
+      int next = after[line][index];
+      int left = isMarkedBy(player, previous) ? playerRuns[line][previous] : 0;
+      int right = isMarkedBy(player, next) ? playerRuns[line][next] : 0;
+      if (left + right + 1 >= K) return true;
+    }
+
+    return false;
   }
 
   /**
-   * Check if the cell in the input direction exists or
-   * is out of bounds.
+   * Returns the number of winning cells of the given player: the free
+   * cells where it would win at once.
    *
    * Time complexity: O(1)
    *
-   * @param cell  starting cell
-   * @param point direction to check on
-   * @return the next cell in the input direction, null if
-   *         it is out of bound
+   * @param player P1 or P2
+   * @return number of winning cells
+   */
+  public int getWinningCellsCount(int player) { return winningCount[player]; }
+
+  /**
+   * Returns a winning cell of the given player.
+   *
+   * Time complexity: O(M * N / 64)
+   *
+   * @param player P1 or P2
+   * @return index of the winning cell with the lowest index, -1 if none
+   */
+  public int getWinningCell(int player) {
+    if (winningCount[player] == 0) return -1;
+
+    long[] playerWinning = winning[player];
+    for (int word = 0;; word++)
+      if (playerWinning[word] != 0)
+        return (word << 6) + Long.numberOfTrailingZeros(playerWinning[word]);
+  }
+
+  /**
+   * Stores in <code>out</code> the winning cells of the given player.
+   *
+   * Time complexity: O(M * N / 64 + W) where W is the number of winning
+   * cells
+   *
+   * @param player P1 or P2
+   * @param out array where to store the cells, with room for
+   *        {@link #getWinningCellsCount(int)} cells
+   * @return number of cells stored in out
    */
-  public MNKCell cellNullOrExists(MNKCell cell, Point point) {
-    int i = cell.i + point.x;
-    int j = cell.j + point.y;
+  public int getWinningCells(int player, int[] out) {
+    long[] playerWinning = winning[player];
+    int count = 0;
+
+    for (int word = 0; word < playerWinning.length; word++) {
+      long cells = playerWinning[word];
+      while (cells != 0) {
+        out[count++] = (word << 6) + Long.numberOfTrailingZeros(cells);
+        cells &= cells - 1;
+      }
+    }
 
-    if (!isCellInBounds(i, j)) return null;
-    return new MNKCell(i, j, cellState(i, j));
+    return count;
+  }
+
+  /**
+   * Appends to <code>out</code> the winning cells of the given player that
+   * go through the cell with the given index, marked by the player: along
+   * each direction only the first free cell after the run of the player
+   * can be one.
+   *
+   * Time complexity: O(K)
+   *
+   * @param player P1 or P2
+   * @param index row-major index of a cell marked by player
+   * @param out array where to append the winning cells, with room for 8
+   *        more cells
+   * @param count number of cells in out
+   * @return the new number of cells in out
+   */
+  public int getWinningCellsThrough(
+          int player, int index, int[] out, int count) {
+    for (int line = 0; line < LINES; line++) {
+      int previous = before[line][index];
+      while (isMarkedBy(player, previous)) previous = before[line][previous];
+      if (previous != -1 && isFree(previous)
+              && isWinningCell(player, previous))
+        out[count++] = previous;
+
+      int next = after[line][index];
+      while (isMarkedBy(player, next)) next = after[line][next];
+      if (next != -1 && isFree(next) && isWinningCell(player, next))
+        out[count++] = next;
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the state of the cell <code>i,j</code>.
+   *
+   * Time complexity: O(1)
+   *
+   * @param i i-th row
+   * @param j j-th column
+   * @return state of the cell (FREE, P1, P2)
+   */
+  public MNKCellState cellState(int i, int j) {
+    return toCellState(owner(i, j));
   }
 
+  /**
+   * Returns the current state of the game.
+   *
+   * Time complexity: O(1)
+   */
+  public MNKGameState gameState() { return gameState; }
+
+  /**
+   * Returns the player allowed to play the next move.
+   *
+   * Time complexity: O(1)
+   *
+   * @return P1 or P2
+   */
+  public int currentPlayer() { return currentPlayer; }
+
+  /**
+   * Returns the number of marked cells.
+   *
+   * Time complexity: O(1)
+   */
+  public int getMarkedCellsCount() { return movesCount; }
+
+  /**
+   * Returns the number of free cells.
+   *
+   * Time complexity: O(1)
+   */
+  public int getFreeCellsCount() { return SIZE - movesCount; }
+
   /**
    * Returns the last marked cell.
    *
    * Time complexity: O(1)
    *
-   * @return last marked cell from the marked cells list
+   * @return index of the last marked cell, -1 if the board is empty
    */
-  public MNKCell getLastMarkedCell() { return MC.getLast(); }
+  public int getLastMarkedCell() {
+    return movesCount == 0 ? -1 : moves[movesCount - 1];
+  }
 
   /**
-   * Returns last marked cell with the input state,
-   * from the marked cells list.
+   * Returns the cell marked by the given move.
    *
-   * Time complexity: O(n)
+   * Time complexity: O(1)
+   *
+   * @param order 0 for the first move of the game, 1 for the second, ...
+   *        up to {@link #getMarkedCellsCount()} excluded
+   * @return index of the cell
+   */
+  public int getMarkedCell(int order) { return moves[order]; }
+
+  /**
+   * Returns the last cell marked by the given player.
+   *
+   * Time complexity: O(1)
+   *
+   * @param player P1 or P2
+   * @return index of the last cell marked by player, -1 if none
+   */
+  public int getLastMarkedCell(int player) {
+    return getLastMarkedCell(player, 0);
+  }
+
+  /**
+   * Returns the cell marked by the given player <code>age</code> moves
+   * before its last one.
+   *
+   * Time complexity: O(1)
+   *
+   * @param player P1 or P2
+   * @param age 0 for the last move of player, 1 for the one before, ...
+   * @return index of the cell, -1 if player has not marked so many cells
+   */
+  public int getLastMarkedCell(int player, int age) {
+    int position = playerMovesCount[player] - 1 - age;
+    return position < 0 ? -1 : playerMoves[player][position];
+  }
+
+  /**
+   * Copies the indexes of the free cells, in row-major order, into the
+   * given array.
+   *
+   * Time complexity: O(M * N / 64 + F) where F is the number of free cells
+   *
+   * @param out array of at least getFreeCellsCount() elements
+   * @return number of free cells copied
+   */
+  public int getFreeCells(int[] out) {
+    int count = 0;
+
+    for (int word = 0; word < bits[P1].length; word++) {
+      long free = ~(bits[P1][word] | bits[P2][word]);
+
+      while (free != 0) {
+        int index = (word << 6) + Long.numberOfTrailingZeros(free);
+        if (index >= SIZE) break;
+
+        out[count++] = index;
+        free &= free - 1;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the number of candidate cells: the free cells within
+   * {@link Settings#CANDIDATE_RADIUS} of a stone, all the free cells if
+   * there are none (e.g. on the empty board) or the radius is 0.
+   *
+   * Time complexity: O(1)
+   */
+  public int getCandidatesCount() {
+    return candidatesCount == 0 ? getFreeCellsCount() : candidatesCount;
+  }
+
+  /**
+   * Checks if the cell with the given index is a candidate cell (see
+   * {@link #getCandidatesCount()}).
+   *
+   * Time complexity: O(1)
+   */
+  public boolean isCandidate(int index) {
+    if (!isFree(index)) return false;
+    return candidatesCount == 0 || (near[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * Copies the indexes of the candidate cells (see
+   * {@link #getCandidatesCount()}), in row-major order, into the given
+   * array.
    *
-   * @param cellState State of the cell to search for
-   * @return the last cell with the input state
+   * Time complexity: O(M * N / 64 + C) where C is the number of candidate
+   * cells
+   *
+   * @param out array of at least getCandidatesCount() elements
+   * @return number of candidate cells copied
    */
-  public MNKCell getLastMarkedCell(MNKCellState cellState) {
-    if (MC.size() == 0) return null;
+  public int getCandidates(int[] out) {
+    if (candidatesCount == 0) return getFreeCells(out);
+
+    int count = 0;
+    for (int word = 0; word < near.length; word++) {
+      long candidates = near[word] & ~(bits[P1][word] | bits[P2][word]);
 
-    for (int i = MC.size() - 1; i >= 0; i--) {
-      MNKCell current = MC.get(i);
-      if (current.state == cellState) return current;
+      while (candidates != 0) {
+        out[count++] = (word << 6) + Long.numberOfTrailingZeros(candidates);
+        candidates &= candidates - 1;
+      }
     }
 
-    return null;
+    return count;
+  }
+
+  /**
+   * Returns the free cells as MNKCell objects.
+   *
+   * Time complexity: O(M * N)
+   */
+  public MNKCell[] getFreeCells() {
+    int[] free = new int[getFreeCellsCount()];
+    int count = getFreeCells(free);
+    MNKCell[] FC = new MNKCell[count];
+
+    for (int k = 0; k < count; k++)
+      FC[k] = new MNKCell(row(free[k]), column(free[k]));
+
+    return FC;
+  }
+
+  /**
+   * Returns the marked cells as MNKCell objects, in the order they were
+   * played.
+   *
+   * Time complexity: O(n)
+   */
+  public MNKCell[] getMarkedCells() {
+    MNKCell[] MC = new MNKCell[movesCount];
+
+    for (int k = 0; k < movesCount; k++)
+      MC[k] = new MNKCell(row(moves[k]), column(moves[k]),
+              toCellState(owner(moves[k])));
+
+    return MC;
   }
 
   /**
@@ -141,9 +735,7 @@ final public class Board extends MNKBoard {
    *
    * @return true if the game state is open, false otherwise
    */
-  public boolean isGameOpen() {
-    return this.gameState().equals(MNKGameState.OPEN);
-  }
+  public boolean isGameOpen() { return gameState == MNKGameState.OPEN; }
 
   /**
    * Checks if the given cell is inside board bounds.
@@ -154,9 +746,7 @@ final public class Board extends MNKBoard {
    * @return true if the cell is inside board bounds, false otherwise
    */
   public boolean isCellInBounds(MNKCell cell) {
-    boolean isValidRow = cell.i >= 0 && cell.i < M;
-    boolean isValidColumn = cell.j >= 0 && cell.j < N;
-    return isValidRow && isValidColumn;
+    return isCellInBounds(cell.i, cell.j);
   }
 
   /**
@@ -168,40 +758,280 @@ final public class Board extends MNKBoard {
    * @param i cell row
    * @param j cell column
    * @return true if the cell is inside board bounds, false otherwise
-   * @see Board#isCellInBounds(MNKCell)
    */
   public boolean isCellInBounds(int i, int j) {
-    return isCellInBounds(new MNKCell(i, j));
+    return i >= 0 && i < M && j >= 0 && j < N;
   }
 
   /**
-   * Get the free cells HashSet
+   * Get the score associated to the given cell.
    *
    * Time complexity: O(1)
    *
-   * @return the free cells HashSet
+   * @param index row-major index of the cell
+   * @return the score associated to the given cell
    */
-  public HashSet<MNKCell> getFCSet() { return this.FC; }
+  public int getCellScore(int index) { return scores[index]; }
 
   /**
-   * Get the score associated to the given cell.
+   * Converts a player index into the corresponding cell state.
    *
    * Time complexity: O(1)
    *
-   * @param cell the cell from which to take the state
-   * @return the score associated to the given cell
+   * @param player P1, P2 or FREE
+   * @return the MNKCellState of the player
+   */
+  public static MNKCellState toCellState(int player) {
+    if (player == P1) return MNKCellState.P1;
+    if (player == P2) return MNKCellState.P2;
+    return MNKCellState.FREE;
+  }
+
+  /**
+   * Checks if the cell with the given index belongs to the given player.
+   *
+   * Time complexity: O(1)
+   */
+  private boolean isMarkedBy(int player, int index) {
+    return index != -1 && (bits[player][index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * Joins the runs of player that touch the just marked cell, on each line.
+   * The lengths of the joined runs are saved for {@link #splitRuns}.
+   *
+   * Time complexity: O(1)
+   *
+   * @param player player that marked the cell
+   * @param index index of the marked cell
+   * @return true if one of the resulting runs is at least K long
+   */
+  private boolean mergeRuns(int player, int index) {
+    int[][] playerRuns = runs[player];
+    int undo = (movesCount - 1) * LINES * 2;
+    boolean isWinning = false;
+
+    for (int line = 0; line < LINES; line++) {
+      int previous = before[line][index];
+      int next = after[line][index];
+      int left = isMarkedBy(player, previous) ? playerRuns[line][previous] : 0;
+      int right = isMarkedBy(player, next) ? playerRuns[line][next] : 0;
+      int length = left + right + 1;
+
+      playerRuns[line][index - left * steps[line]] = length;
+      playerRuns[line][index + right * steps[line]] = length;
+      mergedRuns[undo++] = left;
+      mergedRuns[undo++] = right;
+
+      if (length >= K) isWinning = true;
+    }
+
+    return isWinning;
+  }
+
+  /**
+   * Restores the runs of player that were joined by {@link #mergeRuns}
+   * when the cell was marked.
+   *
+   * Time complexity: O(1)
+   *
+   * @param player player that marked the cell
+   * @param index index of the unmarked cell
+   */
+  private void splitRuns(int player, int index) {
+    int[][] playerRuns = runs[player];
+    int undo = movesCount * LINES * 2;
+
+    for (int line = 0; line < LINES; line++) {
+      int step = steps[line];
+      int left = mergedRuns[undo++];
+      int right = mergedRuns[undo++];
+
+      if (left > 0) {
+        playerRuns[line][index - left * step] = left;
+        playerRuns[line][index - step] = left;
+      }
+
+      if (right > 0) {
+        playerRuns[line][index + step] = right;
+        playerRuns[line][index + right * step] = right;
+      }
+    }
+  }
+
+  /**
+   * Updates the winning cells after a move: the marked cell is not a
+   * winning cell any more, and only the cells just past the ends of the
+   * runs joined by the move can become winning cells of player. The
+   * changes are saved for {@link #restoreWinningCells}.
+   *
+   * Time complexity: O(1)
+   *
+   * @param player player that marked the cell
+   * @param index index of the marked cell
+   */
+  private void updateWinningCells(int player, int index) {
+    int undo = (movesCount - 1) * WINNING_UNDO;
+    int merged = (movesCount - 1) * LINES * 2;
+
+    int cleared = 0;
+    for (int p = P1; p <= P2; p++) {
+      if ((winning[p][index >>> 6] & (1L << index)) != 0) {
+        winning[p][index >>> 6] &= ~(1L << index);
+        winningCount[p]--;
+        cleared |= 1 << p;
+      }
+    }
+    winningUndo[undo++] = cleared;
+
+    for (int line = 0; line < LINES; line++) {
+      int step = steps[line];
+      int left = mergedRuns[merged++];
+      int right = mergedRuns[merged++];
+      winningUndo[undo++] =
+              addWinningCell(player, before[line][index - left * step]);
+      winningUndo[undo++] =
+              addWinningCell(player, after[line][index + right * step]);
+    }
+  }
+
+  /**
+   * Adds the given cell to the winning cells of player, if it is one.
+   *
+   * Time complexity: O(1)
+   *
+   * @param player P1 or P2
+   * @param index index of a cell, -1 for none
+   * @return the index if the cell was added, -1 otherwise
+   */
+  private int addWinningCell(int player, int index) {
+    if (index == -1 || !isFree(index)) return -1;
+    if ((winning[player][index >>> 6] & (1L << index)) != 0) return -1;
+    if (!isWinningCell(player, index)) return -1;
+
+    winning[player][index >>> 6] |= 1L << index;
+    winningCount[player]++;
+    return index;
+  }
+
+  /**
+   * Undoes the changes of the winning cells made by
+   * {@link #updateWinningCells} when the cell was marked.
+   *
+   * Time complexity: O(1)
+   *
+   * @param player player that marked the cell
+   * @param index index of the unmarked cell
+   */
+  private void restoreWinningCells(int player, int index) {
+    int undo = movesCount * WINNING_UNDO;
+
+    int cleared = winningUndo[undo++];
+    for (int p = P1; p <= P2; p++) {
+      if ((cleared & (1 << p)) != 0) {
+        winning[p][index >>> 6] |= 1L << index;
+        winningCount[p]++;
+      }
+    }
+
+    for (int k = 1; k < WINNING_UNDO; k++) {
+      int cell = winningUndo[undo++];
+      if (cell == -1) continue;
+      winning[player][cell >>> 6] &= ~(1L << cell);
+      winningCount[player]--;
+    }
+  }
+
+  /**
+   * Counts the just marked cell as a stone near the cells within the
+   * radius, which become candidates if they were not. The cell itself is
+   * not a candidate any more.
+   *
+   * Time complexity: O(R^2) where R is the radius
+   *
+   * @param index index of the marked cell
+   */
+  private void addNearStone(int index) {
+    if (radius == 0) return;
+    if (nearStones[index] > 0) candidatesCount--;
+
+    int row = row(index), column = column(index);
+    int firstColumn = Math.max(0, column - radius);
+    int lastColumn = Math.min(N - 1, column + radius);
+    for (int i = Math.max(0, row - radius);
+            i <= Math.min(M - 1, row + radius); i++) {
+      for (int cell = index(i, firstColumn); cell <= index(i, lastColumn);
+              cell++) {
+        if (nearStones[cell]++ > 0) continue;
+        near[cell >>> 6] |= 1L << cell;
+        if (isFree(cell)) candidatesCount++;
+      }
+    }
+  }
+
+  /**
+   * Undoes {@link #addNearStone} for a cell about to be unmarked: the
+   * cells left without stones near them are not candidates any more.
+   *
+   * Time complexity: O(R^2) where R is the radius
+   *
+   * @param index index of the cell, still marked
    */
-  public int getCellScore(MNKCell cell) {
-    return scores.get(new MNKCell(cell.i, cell.j));
+  private void removeNearStone(int index) {
+    if (radius == 0) return;
+
+    int row = row(index), column = column(index);
+    int firstColumn = Math.max(0, column - radius);
+    int lastColumn = Math.min(N - 1, column + radius);
+    for (int i = Math.max(0, row - radius);
+            i <= Math.min(M - 1, row + radius); i++) {
+      for (int cell = index(i, firstColumn); cell <= index(i, lastColumn);
+              cell++) {
+        if (--nearStones[cell] > 0) continue;
+        near[cell >>> 6] &= ~(1L << cell);
+        if (isFree(cell)) candidatesCount--;
+      }
+    }
   }
 
   /**
-   * Associate a score to each cell on the board.
+   * Computes the previous and next cell of every cell along each line.
    * It is called in the class constructor.
    *
    * Time complexity: Θ(M*N)
    */
-  private void setBoardScores() {
+  private void setNeighbours() {
+    int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    for (int line = 0; line < LINES; line++) {
+      int di = directions[line][0];
+      int dj = directions[line][1];
+
+      for (int i = 0; i < M; i++) {
+        for (int j = 0; j < N; j++) {
+          int index = index(i, j);
+          before[line][index] =
+                  isCellInBounds(i - di, j - dj) ? index(i - di, j - dj) : -1;
+          after[line][index] =
+                  isCellInBounds(i + di, j + dj) ? index(i + di, j + dj) : -1;
+        }
+      }
+    }
+  }
+
+  /**
+   * Associate a score to each cell of a board of size M x N.
+   * It is called in the class constructor, once per board size.
+   *
+   * Time complexity: Θ(M*N)
+   *
+   * @param M board rows
+   * @param N board columns
+   * @return the scores of the cells, indexed by cell index
+   */
+  private static int[] computeBoardScores(int M, int N) {
+    int[] scores = new int[M * N];
+
     /**
      * clang-format off
      * Example: 4x4
@@ -231,42 +1061,32 @@ final public class Board extends MNKBoard {
     while (up <= down && left <= right) {
       // We move from left to right
       if (direction == 0) {
-        for (int i = left; i <= right; i++) {
-          MNKCell cell = new MNKCell(up, i);
-          scores.put(cell, score);
-        }
+        for (int i = left; i <= right; i++) scores[up * N + i] = score;
         up++;
       }
 
       // We move from up to down
       if (direction == 1) {
-        for (int i = up; i <= down; i++) {
-          MNKCell cell = new MNKCell(i, right);
-          scores.put(cell, score);
-        }
+        for (int i = up; i <= down; i++) scores[i * N + right] = score;
         right--;
       }
 
       // We move from right to left
       if (direction == 2) {
-        for (int i = right; i >= left; i--) {
-          MNKCell cell = new MNKCell(down, i);
-          scores.put(cell, score);
-        }
+        for (int i = right; i >= left; i--) scores[down * N + i] = score;
         down--;
       }
 
       // We move from down to up
       if (direction == 3) {
-        for (int i = down; i >= up; i--) {
-          MNKCell cell = new MNKCell(i, left);
-          scores.put(cell, score);
-        }
+        for (int i = down; i >= up; i--) scores[i * N + left] = score;
         left++;
       }
 
       if (direction == 3) score += SCORE_INCREMENTER;
       direction = (direction + 1) % 4;
     }
+
+    return scores;
   }
 }
@@ -26,4 +26,7 @@ public final class Constants {
     put("down-left", DOWN_LEFT);
     put("left", LEFT);
   }};
+
+  public static final Point[] DIRECTIONS =
+          allDirections.values().toArray(new Point[0]);
 }
@@ -2,20 +2,21 @@ package mnkgame.AlphaBetaPrugna;
 
 import static mnkgame.AlphaBetaPrugna.Constants.*;
 
-import mnkgame.MNKCell;
-import mnkgame.MNKCellState;
-
 public class Eval {
   /** Local board */
   private Board board;
-  /** Cell to be evaluated */
-  private MNKCell startCell;
+  /** Row of the cell to be evaluated */
+  private int startRow;
+  /** Column of the cell to be evaluated */
+  private int startColumn;
   /** Score of the cell to evaluate */
   private int startCellScore;
-  /** State of the cell to evaluate */
-  private MNKCellState startCellState;
-  /** Opposite state of the cell to evaluate */
-  private MNKCellState opponentCellState;
+  /** Owner of the cell to evaluate */
+  private int startCellState;
+  /** Opposite owner of the cell to evaluate */
+  private int opponentCellState;
+  /** Marker of a side that ends on the board bounds */
+  private static final int OUT_OF_BOUNDS = -2;
   /** K - 1 series score */
   private static int KMINUSONE = 100;
   /** K - 2 series score */
@@ -23,15 +24,17 @@ public class Eval {
   /** K - 3 series score */
   private static int KMINUSTHIRD = 15;
 
-  public Eval(Board board, MNKCell startCell) {
+  /**
+   * @param board board to evaluate
+   * @param startCell index of the (marked) cell to evaluate
+   */
+  public Eval(Board board, int startCell) {
     this.board = board;
-    this.startCell = startCell;
-    this.startCellScore = this.board.getCellScore(this.startCell);
-    this.startCellState = this.startCell.state;
-    if (this.startCellState == MNKCellState.P1)
-      this.opponentCellState = MNKCellState.P2;
-    else
-      this.opponentCellState = MNKCellState.P1;
+    this.startRow = board.row(startCell);
+    this.startColumn = board.column(startCell);
+    this.startCellScore = this.board.getCellScore(startCell);
+    this.startCellState = this.board.owner(startCell);
+    this.opponentCellState = 1 - this.startCellState;
   }
 
   /**
@@ -49,10 +52,9 @@ public class Eval {
    *
    * @param firstSide first side of a direction
    * @param secondSide second side of a direction
-   * @param stateToMatch state of the cells for which to evaluate the series
+   * @param stateToMatch owner of the cells for which to evaluate the series
    */
-  private int baseEval(
-          Point firstSide, Point secondSide, MNKCellState stateToMatch) {
+  private int baseEval(Point firstSide, Point secondSide, int stateToMatch) {
     SideDirection firstDirection = new SideDirection();
     SideDirection secondDirection = new SideDirection();
 
@@ -65,54 +67,38 @@ public class Eval {
   /**
    * Calls baseEval on the two direction of the row.
    */
-  private int evalRow() {
-    Point left = new Point(LEFT);
-    Point right = new Point(RIGHT);
-
-    return baseEval(left, right, startCellState);
-  }
+  private int evalRow() { return baseEval(LEFT, RIGHT, startCellState); }
 
   /**
    * Calls baseEval on the two direction of the column.
    */
-  private int evalColumn() {
-    Point up = new Point(UP);
-    Point down = new Point(DOWN);
-
-    return baseEval(up, down, startCellState);
-  }
+  private int evalColumn() { return baseEval(UP, DOWN, startCellState); }
 
   /**
    * Calls baseEval on the two direction of the diagonal.
    */
   private int evalDiagonal() {
-    Point upLeft = new Point(UP_LEFT);
-    Point downRight = new Point(DOWN_RIGHT);
-
-    return baseEval(upLeft, downRight, startCellState);
+    return baseEval(UP_LEFT, DOWN_RIGHT, startCellState);
   }
 
   /**
    * Calls baseEval on the two direction of the antidiagonal.
    */
   private int evalAntidiagonal() {
-    Point upRight = new Point(UP_RIGHT);
-    Point downLeft = new Point(DOWN_LEFT);
-
-    return baseEval(upRight, downLeft, startCellState);
+    return baseEval(UP_RIGHT, DOWN_LEFT, startCellState);
   }
 
   /** Class that implements metods of one side evaluation */
   final private class SideDirection {
-    /** Cell that close the one side series */
-    public MNKCell sideCellEnd;
+    /** Owner of the cell that close the one side series */
+    public int sideCellEnd;
     /** Number of consecutive alignments */
     public int consecutiveAlignments;
     /** True if there is a cell that close the series */
     private boolean hasTouchedOtherState;
 
     public SideDirection() {
-      this.sideCellEnd = null;
+      this.sideCellEnd = OUT_OF_BOUNDS;
       this.consecutiveAlignments = 0;
       this.hasTouchedOtherState = false;
     }
@@ -121,22 +107,23 @@ public class Eval {
      * Evaluate a single side direction.
      *
      * @param side Side to move on
-     * @param stateToMatch State of the cell to be matched
+     * @param stateToMatch Owner of the cell to be matched
      */
-    public void evalSideDirection(Point side, MNKCellState stateToMatch) {
+    public void evalSideDirection(Point side, int stateToMatch) {
       int distance = 1;
 
       while (!hasTouchedOtherState) {
-        MNKCell nextCell =
-                board.cellNullOrExists(startCell, side.multiply(distance));
-        if (nextCell == null) break;
+        int i = startRow + side.x * distance;
+        int j = startColumn + side.y * distance;
+        if (!board.isCellInBounds(i, j)) break;
+        int nextCellState = board.owner(i, j);
 
         // If the state of the nextCell is different from ours, it means that we
         // have touched either a free cell or the opposite cell. So we need to
         // exit the loop and save the nextCell.
-        if (nextCell.state != stateToMatch) {
+        if (nextCellState != stateToMatch) {
           hasTouchedOtherState = true;
-          sideCellEnd = nextCell;
+          sideCellEnd = nextCellState;
 
           // Otherwise it means that the state of the nextCell is equal to
           // stateToMatch, so we increase the number of consecutive cells
@@ -174,13 +161,14 @@ public class Eval {
      * @return true if we are in BlockOne configurations, false otherwise
      */
     private boolean increaserBlockOne(SideDirection other) {
-      boolean areSideNull =
-              this.sideCellEnd == null & other.sideCellEnd == null;
+      boolean areSideNull = this.sideCellEnd == OUT_OF_BOUNDS
+              & other.sideCellEnd == OUT_OF_BOUNDS;
       if (areSideNull) return true;
 
-      if (this.sideCellEnd != null && other.sideCellEnd != null)
-        return this.sideCellEnd.state == opponentCellState
-                && other.sideCellEnd.state == opponentCellState;
+      if (this.sideCellEnd != OUT_OF_BOUNDS
+              && other.sideCellEnd != OUT_OF_BOUNDS)
+        return this.sideCellEnd == opponentCellState
+                && other.sideCellEnd == opponentCellState;
 
       return false;
     }
@@ -195,14 +183,14 @@ public class Eval {
      * @return true if we are in BlockTwo configurations, false otherwise
      */
     private boolean increaserBlockTwo(SideDirection other) {
-      boolean isFirstSideNull = this.sideCellEnd == null;
-      boolean isSecondSideNull = other.sideCellEnd == null;
+      boolean isFirstSideNull = this.sideCellEnd == OUT_OF_BOUNDS;
+      boolean isSecondSideNull = other.sideCellEnd == OUT_OF_BOUNDS;
 
       if (isFirstSideNull && !isSecondSideNull)
-        return other.sideCellEnd.state == MNKCellState.FREE;
+        return other.sideCellEnd == Board.FREE;
 
       else if (!isFirstSideNull && isSecondSideNull)
-        return this.sideCellEnd.state == MNKCellState.FREE;
+        return this.sideCellEnd == Board.FREE;
 
       return false;
     }
@@ -217,14 +205,14 @@ public class Eval {
      * @return true if we are in BlockThird configurations, false otherwise
      */
     private boolean increaserBlockThird(SideDirection other) {
-      boolean isFirstSideNull = this.sideCellEnd == null;
-      boolean isSecondSideNull = other.sideCellEnd == null;
+      boolean isFirstSideNull = this.sideCellEnd == OUT_OF_BOUNDS;
+      boolean isSecondSideNull = other.sideCellEnd == OUT_OF_BOUNDS;
 
       if (isFirstSideNull && !isSecondSideNull)
-        return other.sideCellEnd.state == opponentCellState;
+        return other.sideCellEnd == opponentCellState;
 
       else if (!isFirstSideNull && isSecondSideNull)
-        return this.sideCellEnd.state == opponentCellState;
+        return this.sideCellEnd == opponentCellState;
 
       return false;
     }
@@ -239,13 +227,13 @@ public class Eval {
      * @return true if we are in BlockFourth configurations, false otherwise
      */
     private boolean increaserBlockFourth(SideDirection other) {
-      boolean areSideNotNull =
-              this.sideCellEnd != null & other.sideCellEnd != null;
+      boolean areSideNotNull = this.sideCellEnd != OUT_OF_BOUNDS
+              & other.sideCellEnd != OUT_OF_BOUNDS;
 
       if (areSideNotNull) {
-        boolean isFirstSideFree = this.sideCellEnd.state == MNKCellState.FREE;
+        boolean isFirstSideFree = this.sideCellEnd == Board.FREE;
         boolean isSecondStateFree =
-                other.sideCellEnd.state == MNKCellState.FREE;
+                other.sideCellEnd == Board.FREE;
 
         return (!isFirstSideFree && isSecondStateFree)
                 || (isFirstSideFree && !isSecondStateFree);
@@ -263,13 +251,13 @@ public class Eval {
      * @return true if we are in BlockFifth configurations, false otherwise
      */
     private boolean increaserBlockFifth(SideDirection other) {
-      boolean areSideNotNull =
-              this.sideCellEnd != null & other.sideCellEnd != null;
+      boolean areSideNotNull = this.sideCellEnd != OUT_OF_BOUNDS
+              & other.sideCellEnd != OUT_OF_BOUNDS;
 
       if (areSideNotNull) {
-        boolean isFirstSideFree = this.sideCellEnd.state == MNKCellState.FREE;
+        boolean isFirstSideFree = this.sideCellEnd == Board.FREE;
         boolean isSecondStateFree =
-                other.sideCellEnd.state == MNKCellState.FREE;
+                other.sideCellEnd == Board.FREE;
 
         return isFirstSideFree && isSecondStateFree;
       }
@@ -0,0 +1,103 @@
+package mnkgame.AlphaBetaPrugna;
+
+import mnkgame.MNKCell;
+import mnkgame.MNKPlayer;
+
+/**
+ * Player that searches its moves with the {@link MonteCarloSearch}.
+ *
+ * <p>It is meant for the very large boards (e.g. 50x50x10 and 70x70x10),
+ * where the alpha-beta {@link Player} cannot get past the first plies. The
+ * forced wins found by the threat-space search are played at once, like
+ * the alpha-beta player does, and the search runs on
+ * {@link Settings#THREADS} threads.</p>
+ */
+final public class MctsPlayer implements MNKPlayer {
+  /** Local board. */
+  private Board board;
+  /** Time budget of our rounds. */
+  private TimeManager timeManager;
+  /** Threat-space search run on the local board before the others. */
+  private ThreatSearch threatSearch;
+  /** Search of the moves, with its tree kept between the moves. */
+  private MonteCarloSearch search;
+
+  /** Default empty constructor */
+  public MctsPlayer() {}
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void initPlayer(
+          int M, int N, int K, boolean first, int timeoutInSecs) {
+    this.board = new Board(M, N, K);
+    this.timeManager =
+            new TimeManager(timeoutInSecs * 1000L, Settings.THREADS);
+    this.threatSearch = new ThreatSearch(board);
+    this.search = new MonteCarloSearch(board, Settings.THREADS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public MNKCell selectCell(MNKCell[] FC, MNKCell[] MC) {
+    timeManager.start(System.nanoTime());
+
+    // Last available move
+    if (FC.length == 1) return FC[0];
+
+    // Update local board and tree with the moves played since our last one
+    for (int k = board.getMarkedCellsCount(); k < MC.length; k++) {
+      board.markCell(MC[k]);
+      search.advance(board.getLastMarkedCell());
+    }
+
+    int cell = selectCell();
+    board.markCell(cell);
+    search.advance(cell);
+    timeManager.finish();
+
+    return new MNKCell(board.row(cell), board.column(cell));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String playerName() {
+    return "AlphaBetaPrugna MCTS";
+  }
+
+  /**
+   * Selects the best move on the local board.
+   *
+   * @return index of the selected cell
+   */
+  private int selectCell() {
+    // If we have the first move, we choose the middle cell
+    if (board.getMarkedCellsCount() == 0)
+      return board.index(board.M / 2, board.N / 2);
+
+    // Forced wins and must-blocks don't need the full search
+    if (Settings.THREAT_SEARCH_MS > 0) {
+      long limit = timeManager.getLimitMillis();
+      int cell = threatSearch.search(
+              Math.min(Settings.THREAT_SEARCH_MS, limit / 10));
+      if (cell != -1) return cell;
+    }
+
+    int cell = search.search(timeManager);
+    if (Settings.VERBOSE) {
+      long elapsed = Math.max(1, timeManager.getElapsedMillis());
+      System.err.format("%s: %d playouts, %d playouts/s, %d root visits, "
+                      + "win rate %.3f, %d threads\n",
+              playerName(), search.getPlayouts(),
+              search.getPlayouts() * 1000 / elapsed, search.getRootVisits(),
+              search.getBestWinRate(), Settings.THREADS);
+    }
+
+    return cell != -1 ? cell : board.pickRandomCell();
+  }
+}
@@ -0,0 +1,410 @@
+package mnkgame.AlphaBetaPrugna;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import mnkgame.MNKGameState;
+
+/**
+ * Monte Carlo tree search (UCT), meant for the very large boards where
+ * alpha-beta does not get past the first plies.
+ *
+ * <p>Each iteration goes down the tree choosing the child with the best
+ * UCB1 value, creates one new node and plays a fast random game from it:
+ * each side takes its win in one, otherwise blocks the opponent one,
+ * otherwise marks a random free cell near a stone (see
+ * {@link Settings#MCTS_RADIUS}). A game longer than
+ * {@link Settings#MCTS_PLAYOUT_MOVES} moves counts as a draw. The result is
+ * added to all the nodes of the path.</p>
+ *
+ * <p>The moves of a node are the free cells near the stones, the ones near
+ * the last moves first, and a node is expanded only after a few visits.
+ * In a forced position (a win in one of either player) the forced move is
+ * the only one.</p>
+ *
+ * <p>The tree is shared by the threads (tree parallelisation): a thread
+ * counts a visit to each node as soon as it goes down it, a virtual loss
+ * that makes the other threads prefer different paths until the result of
+ * its playout is added. The tree is kept between the moves: the subtree of
+ * the moves actually played becomes the new root.</p>
+ */
+final public class MonteCarloSearch {
+  /** Board of the root, owned by the caller. */
+  private final Board board;
+  /** Workers: the first one runs on the calling thread, on the board. */
+  private final Worker[] workers;
+  /** Executor running the other workers, null with a single thread. */
+  private final ExecutorService executor;
+  /** Root of the tree, for the position on the board. */
+  private Node root;
+  /** Time budget of the current search. */
+  private TimeManager timeManager;
+  /** Set to stop the workers. */
+  private volatile boolean stopped;
+
+  /** Visits a node gets before its moves are generated. */
+  private static final int EXPAND_VISITS = 4;
+  /** Random cells tried near the stones before any free cell is taken. */
+  private static final int NEIGHBOUR_TRIES = 16;
+
+  /**
+   * MonteCarloSearch constructor.
+   *
+   * @param board board of the root: the search must be told of every move
+   *        marked on it with {@link #advance(int)}
+   * @param threads number of threads searching each move
+   */
+  public MonteCarloSearch(Board board, int threads) {
+    this.board = board;
+    this.workers = new Worker[threads];
+    this.workers[0] = new Worker(board, 0);
+    for (int id = 1; id < threads; id++)
+      this.workers[id] = new Worker(new Board(board), id);
+    this.executor = threads > 1 ? newExecutor(threads - 1) : null;
+    this.root = new Node(-1);
+  }
+
+  /**
+   * Moves the root to the child of the given move, keeping its subtree.
+   *
+   * Time complexity: O(C) where C is the number of moves of the root
+   *
+   * @param move index of the cell just marked on the board
+   */
+  public void advance(int move) {
+    Node next = null;
+    int created = root.created;
+    for (int k = 0; k < created && next == null; k++)
+      if (root.children[k].move == move) next = root.children[k];
+
+    this.root = next != null ? next : new Node(move);
+  }
+
+  /**
+   * Searches the best move on the board until the hard limit of the time
+   * manager is reached.
+   *
+   * @param timeManager time budget of the search, already started
+   * @return index of the most visited move, -1 if none was visited
+   */
+  public int search(TimeManager timeManager) {
+    this.timeManager = timeManager;
+    this.stopped = false;
+
+    Future<?>[] helpers = new Future<?>[workers.length];
+    for (int id = 1; id < workers.length; id++) {
+      Worker worker = workers[id];
+      worker.board.copyFrom(board);
+      helpers[id] = executor.submit(worker::run);
+    }
+
+    workers[0].run();
+
+    for (int id = 1; id < workers.length; id++) {
+      try {
+        helpers[id].get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // A failed worker only means fewer playouts
+      }
+    }
+
+    Node best = null;
+    for (int k = 0; k < root.created; k++)
+      if (best == null || root.children[k].visits > best.visits)
+        best = root.children[k];
+    return best == null ? -1 : best.move;
+  }
+
+  /** Returns the playouts of the last search. */
+  public long getPlayouts() {
+    long playouts = 0;
+    for (Worker worker : workers) playouts += worker.playouts;
+    return playouts;
+  }
+
+  /** Returns the visits of the root, those of the previous moves too. */
+  public int getRootVisits() { return root.visits; }
+
+  /**
+   * Returns the win rate of the most visited move of the root.
+   *
+   * @return score of the move for the player to move, from 0 (loss) to 1
+   *         (win), 0.5 if no move was visited
+   */
+  public double getBestWinRate() {
+    Node best = null;
+    for (int k = 0; k < root.created; k++)
+      if (best == null || root.children[k].visits > best.visits)
+        best = root.children[k];
+    return best == null ? 0.5 : best.score / (2.0 * best.visits);
+  }
+
+  /**
+   * Creates the executor of the workers: its threads are daemons, so they
+   * never keep the JVM alive, and they die after a minute of idle.
+   *
+   * @param threads number of threads
+   * @return the executor
+   */
+  private static ExecutorService newExecutor(int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+              Thread thread = new Thread(runnable, "AlphaBetaPrugna-mcts");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** Node of the tree. */
+  private static final class Node {
+    /** Move that leads to the node from its parent, -1 for the root. */
+    final int move;
+    /** Moves of the node, null until it is expanded. */
+    volatile int[] moves;
+    /** Children of the node, in the order of the moves. */
+    volatile Node[] children;
+    /** Number of children created so far, the first ones of the moves. */
+    volatile int created;
+    /** Visits of the node, virtual ones included. */
+    volatile int visits;
+    /**
+     * Results of the playouts through the node, for the player that made
+     * its move: 2 per win, 1 per draw.
+     */
+    volatile int score;
+
+    static final AtomicIntegerFieldUpdater<Node> VISITS =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+    static final AtomicIntegerFieldUpdater<Node> SCORE =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "score");
+
+    Node(int move) { this.move = move; }
+  }
+
+  /** Thread of the search, with its own board. */
+  private final class Worker {
+    /** Board of the worker, at the root position between iterations. */
+    final Board board;
+    /** Random generator of the playouts. */
+    final SplittableRandom random;
+    /** Nodes of the path of the current iteration. */
+    Node[] path;
+    /** Stamp of the cells already added by the current expansion. */
+    final int[] seen;
+    /** Stamp of the current expansion. */
+    int seenStamp;
+    /** Moves found by the current expansion. */
+    final int[] moves;
+    /** Playouts of the last search. */
+    volatile long playouts;
+
+    Worker(Board board, int id) {
+      this.board = board;
+      this.random = new SplittableRandom(System.nanoTime() + id);
+      this.path = new Node[64];
+      this.seen = new int[board.SIZE];
+      this.moves = new int[board.SIZE];
+    }
+
+    /** Runs iterations until the time runs out or the search is stopped. */
+    void run() {
+      playouts = 0;
+      long count = 0;
+
+      while (!stopped) {
+        iterate(root);
+        count++;
+        if (timeManager.isHardLimitReached()) stopped = true;
+      }
+
+      playouts = count;
+    }
+
+    /**
+     * Runs an iteration from the given root: selection, expansion,
+     * playout and backpropagation.
+     *
+     * @param root root of the tree, for the position on the board
+     */
+    void iterate(Node root) {
+      int rootPlayer = board.currentPlayer();
+      int depth = 0;
+      Node node = root;
+      Node.VISITS.incrementAndGet(node);
+      path[0] = node;
+
+      while (board.isGameOpen()) {
+        if (node.moves == null) {
+          if (node.visits < EXPAND_VISITS && node != root) break;
+          expand(node);
+        }
+
+        Node child = select(node);
+        Node.VISITS.incrementAndGet(child);
+        board.markCell(child.move);
+        if (++depth == path.length) path = Arrays.copyOf(path, depth * 2);
+        path[depth] = child;
+        node = child;
+      }
+
+      int winner = board.isGameOpen() ? playout() : winner();
+
+      // The node at an odd depth holds a move of the root player
+      for (int k = 1; k <= depth; k++) {
+        int mover = k % 2 == 1 ? rootPlayer : 1 - rootPlayer;
+        int result = winner == Board.FREE ? 1 : winner == mover ? 2 : 0;
+        if (result > 0) Node.SCORE.addAndGet(path[k], result);
+        board.unmarkCell();
+      }
+    }
+
+    /**
+     * Chooses the child of a node to go down: the next new child while
+     * some moves have none, the best UCB1 value otherwise.
+     *
+     * @param node expanded node
+     * @return the child
+     */
+    Node select(Node node) {
+      if (node.created < node.moves.length) {
+        synchronized (node) {
+          int created = node.created;
+          if (created < node.moves.length) {
+            Node child = new Node(node.moves[created]);
+            node.children[created] = child;
+            node.created = created + 1;
+            return child;
+          }
+        }
+      }
+
+      Node[] children = node.children;
+      double logVisits = Math.log(node.visits);
+      Node best = children[0];
+      double bestValue = Double.NEGATIVE_INFINITY;
+      for (Node child : children) {
+        int visits = Math.max(1, child.visits);
+        double value = child.score / (2.0 * visits)
+                + Settings.MCTS_EXPLORATION * Math.sqrt(logVisits / visits);
+        if (value > bestValue) {
+          bestValue = value;
+          best = child;
+        }
+      }
+
+      return best;
+    }
+
+    /**
+     * Generates the moves of a node: the forced move if there is one, the
+     * free cells within {@link Settings#MCTS_RADIUS} of the stones
+     * otherwise, the ones near the last moves first.
+     *
+     * Time complexity: O(S * R^2) where S is the number of stones and R
+     * the radius
+     *
+     * @param node node of the position on the board
+     */
+    void expand(Node node) {
+      synchronized (node) {
+        if (node.moves != null) return;
+
+        int count = 0;
+        int side = board.currentPlayer();
+        int forced = board.getWinningCell(side);
+        if (forced == -1) forced = board.getWinningCell(1 - side);
+
+        if (forced != -1) {
+          moves[count++] = forced;
+        } else {
+          seenStamp++;
+          int radius = Settings.MCTS_RADIUS;
+          for (int order = board.getMarkedCellsCount() - 1; order >= 0;
+                  order--) {
+            int stone = board.getMarkedCell(order);
+            int row = board.row(stone), column = board.column(stone);
+            for (int i = row - radius; i <= row + radius; i++) {
+              for (int j = column - radius; j <= column + radius; j++) {
+                if (!board.isCellInBounds(i, j)) continue;
+                int cell = board.index(i, j);
+                if (seen[cell] != seenStamp && board.isFree(cell)) {
+                  seen[cell] = seenStamp;
+                  moves[count++] = cell;
+                }
+              }
+            }
+          }
+          if (count == 0) count = board.getFreeCells(moves);
+        }
+
+        node.children = new Node[count];
+        node.moves = Arrays.copyOf(moves, count);
+      }
+    }
+
+    /**
+     * Plays a random game from the position on the board, which is left
+     * as it was found.
+     *
+     * @return winner of the game (P1 or P2), FREE for a draw
+     */
+    int playout() {
+      int played = 0;
+
+      while (board.isGameOpen() && played < Settings.MCTS_PLAYOUT_MOVES) {
+        int side = board.currentPlayer();
+        int cell = board.getWinningCell(side);
+        if (cell == -1) cell = board.getWinningCell(1 - side);
+        if (cell == -1) cell = randomNeighbour();
+        board.markCell(cell);
+        played++;
+      }
+
+      int winner = board.isGameOpen() ? Board.FREE : winner();
+      for (; played > 0; played--) board.unmarkCell();
+      return winner;
+    }
+
+    /**
+     * Returns a random free cell near a random stone, or any random free
+     * cell if none is found in a few tries.
+     *
+     * Time complexity: O(1), O(M * N) when it falls back to any free cell
+     */
+    int randomNeighbour() {
+      int stones = board.getMarkedCellsCount();
+      int radius = Settings.MCTS_RADIUS;
+
+      for (int t = 0; t < NEIGHBOUR_TRIES && stones > 0; t++) {
+        int stone = board.getMarkedCell(random.nextInt(stones));
+        int i = board.row(stone) + random.nextInt(2 * radius + 1) - radius;
+        int j = board.column(stone) + random.nextInt(2 * radius + 1) - radius;
+        if (board.isCellInBounds(i, j) && board.isFree(board.index(i, j)))
+          return board.index(i, j);
+      }
+
+      int target = random.nextInt(board.getFreeCellsCount());
+      for (int cell = 0;; cell++)
+        if (board.isFree(cell) && target-- == 0) return cell;
+    }
+
+    /** Returns the winner of the ended game on the board, FREE for a draw. */
+    int winner() {
+      MNKGameState state = board.gameState();
+      if (state == MNKGameState.WINP1) return Board.P1;
+      if (state == MNKGameState.WINP2) return Board.P2;
+      return Board.FREE;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package mnkgame.AlphaBetaPrugna;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Book of the best moves of the opening positions of a board size,
+ * searched offline by the {@link OpeningBookGenerator}.
+ *
+ * <p>The book is a binary file, <code>M</code>x<code>N</code>x<code>K</code>
+ * <code>.book</code> in {@link Settings#BOOK_DIR}, made of a header (magic,
+ * M, N, K and number of entries, as ints) followed by the entries sorted
+ * by key: the zobrist key of the position (long) and the row-major index
+ * of its best move (int), all big-endian. The file is memory-mapped, so
+ * loading it takes about the same time whatever its size, and a position
+ * is looked up with a binary search on the mapped entries.</p>
+ */
+final public class OpeningBook {
+  /** First int of a book file ("PRGB"). */
+  static final int MAGIC = 0x50524742;
+  /** Bytes of the header: magic, M, N, K and number of entries. */
+  static final int HEADER_BYTES = 5 * Integer.BYTES;
+  /** Bytes of an entry: key and move. */
+  static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+  /** Mapped entries of the book. */
+  private final ByteBuffer entries;
+  /** Number of entries. */
+  private final int count;
+
+  /**
+   * OpeningBook constructor.
+   *
+   * @param entries entries of the book, sorted by key
+   * @param count number of entries
+   */
+  private OpeningBook(ByteBuffer entries, int count) {
+    this.entries = entries;
+    this.count = count;
+  }
+
+  /**
+   * Loads the book of a board size from {@link Settings#BOOK_DIR}.
+   *
+   * <p>Time complexity: <code>O(1)</code> (the entries are read from the
+   * file only when they are looked up)</p>
+   *
+   * @param M the number of rows of the board
+   * @param N the number of columns of the board
+   * @param K the number of symbols to be aligned (horizontally, vertically,
+   *        diagonally) for a win
+   * @return the book, null if there is no valid book for the board size
+   */
+  public static OpeningBook load(int M, int N, int K) {
+    if (Settings.BOOK_DIR.isEmpty()) return null;
+
+    File file = new File(Settings.BOOK_DIR, fileName(M, N, K));
+    if (!file.isFile()) return null;
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      long size = channel.size();
+      if (size < HEADER_BYTES || size > Integer.MAX_VALUE) return null;
+
+      // The mapping stays valid after the channel is closed
+      MappedByteBuffer buffer =
+              channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      buffer.order(ByteOrder.BIG_ENDIAN);
+      int count = buffer.getInt(4 * Integer.BYTES);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != M
+              || buffer.getInt(2 * Integer.BYTES) != N
+              || buffer.getInt(3 * Integer.BYTES) != K || count < 0
+              || size != HEADER_BYTES + (long) count * ENTRY_BYTES)
+        return null;
+
+      buffer.position(HEADER_BYTES);
+      return new OpeningBook(buffer.slice(), count);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the name of the book file of a board size.
+   *
+   * @param M the number of rows of the board
+   * @param N the number of columns of the board
+   * @param K the number of symbols to be aligned for a win
+   * @return the file name
+   */
+  static String fileName(int M, int N, int K) {
+    return M + "x" + N + "x" + K + ".book";
+  }
+
+  /**
+   * Looks up the best move of a position.
+   *
+   * <p>Time complexity: <code>O(log E)</code> where E is the number of
+   * entries</p>
+   *
+   * @param hash zobrist key of the position
+   * @return row-major index of the best move, -1 if the position is not
+   *         in the book
+   */
+  public int lookup(long hash) {
+    int low = 0, high = count - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long key = entries.getLong(middle * ENTRY_BYTES);
+      if (key < hash)
+        low = middle + 1;
+      else if (key > hash)
+        high = middle - 1;
+      else
+        return entries.getInt(middle * ENTRY_BYTES + Long.BYTES);
+    }
+
+    return -1;
+  }
+
+  /** Returns the number of positions in the book. */
+  public int size() { return count; }
+}
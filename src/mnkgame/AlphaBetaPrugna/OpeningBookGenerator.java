@@ -0,0 +1,140 @@
+package mnkgame.AlphaBetaPrugna;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the {@link OpeningBook} of a board size.
+ *
+ * <p>Starting from the centre opening, each position is searched for the
+ * given time, much longer than a round, and its best move is stored. Then
+ * the best moves of the search (the book move and the next ones, as
+ * sorted by its last iteration) are played, and the positions they reach
+ * are searched the same way, until the given number of plies. The moves
+ * searched this way are the likely ones of both players, so the book
+ * covers the opening of the games played with either of them.</p>
+ *
+ * <p>Usage: <code>java mnkgame.AlphaBetaPrugna.OpeningBookGenerator M N K
+ * [plies] [seconds] [breadth]</code> (defaults: 5 plies, 10 seconds per
+ * position, 3 moves expanded per position). The book is written in
+ * {@link Settings#BOOK_DIR}.</p>
+ */
+final public class OpeningBookGenerator {
+  private OpeningBookGenerator() {}
+
+  /** Board the positions are searched on. */
+  private static Board board;
+  /**
+   * Searches of the two players, each with its own transposition table:
+   * their scores of the same position do not have the same sign, so they
+   * cannot share the entries.
+   */
+  private static Search[] searches;
+  /** Transposition tables of the searches, by player. */
+  private static TranspositionTable[] transpositionTables;
+  /** Time budget of each position. */
+  private static TimeManager timeManager;
+  /** Best move of each position searched, by zobrist key. */
+  private static final Map<Long, Integer> book = new TreeMap<>();
+  /** Plies of the book, moves expanded per position. */
+  private static int plies, breadth;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("usage: OpeningBookGenerator M N K [plies] "
+              + "[seconds] [breadth]");
+      System.exit(1);
+    }
+    int M = Integer.parseInt(args[0]);
+    int N = Integer.parseInt(args[1]);
+    int K = Integer.parseInt(args[2]);
+    plies = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+    int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+    breadth = args.length > 5 ? Integer.parseInt(args[5]) : 3;
+
+    board = new Board(M, N, K);
+    transpositionTables = new TranspositionTable[] {
+            new TranspositionTable(Settings.TT_SIZE_MB),
+            new TranspositionTable(Settings.TT_SIZE_MB)};
+    timeManager = new TimeManager(seconds * 1000L);
+    searches = new Search[] {
+            new Search(board, transpositionTables[Board.P1], Board.P1, 0),
+            new Search(board, transpositionTables[Board.P2], Board.P2, 0)};
+
+    // Like the Player, the first move is the centre without searching
+    board.markCell(board.index(M / 2, N / 2));
+    expand(1);
+
+    File dir = new File(Settings.BOOK_DIR);
+    dir.mkdirs();
+    File file = new File(dir, OpeningBook.fileName(M, N, K));
+    write(file, M, N, K);
+    System.out.format("%d positions written to %s\n", book.size(), file);
+  }
+
+  /**
+   * Searches the position on the board and the ones reached by its best
+   * moves, until {@link #plies}.
+   *
+   * <p>Time complexity: <code>O(breadth^plies)</code> searches</p>
+   *
+   * @param ply number of moves played
+   */
+  private static void expand(int ply) {
+    if (ply >= plies || !board.isGameOpen()) return;
+    // Transpositions are searched only once
+    if (book.containsKey(board.hash)) return;
+
+    int player = board.currentPlayer();
+    Search search = searches[player];
+    transpositionTables[player].newSearch();
+    timeManager.start(System.nanoTime());
+    search.prepare(timeManager);
+    int cell = search.search();
+    if (cell == -1) return;
+
+    book.put(board.hash, cell);
+    System.out.format("ply %d: move %d,%d, depth %d, score %d\n", ply,
+            board.row(cell), board.column(cell), search.getCompletedDepth(),
+            search.getCompletedScore());
+
+    int[] moves = new int[breadth];
+    int count = search.getRootMoves(moves);
+    for (int k = 0; k < count; k++) {
+      board.markCell(moves[k]);
+      expand(ply + 1);
+      board.unmarkCell();
+    }
+  }
+
+  /**
+   * Writes the book in the format read by {@link OpeningBook}.
+   *
+   * @param file book file
+   * @param M the number of rows of the board
+   * @param N the number of columns of the board
+   * @param K the number of symbols to be aligned for a win
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(File file, int M, int N, int K)
+          throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(OpeningBook.MAGIC);
+      out.writeInt(M);
+      out.writeInt(N);
+      out.writeInt(K);
+      out.writeInt(book.size());
+      // The tree map iterates the keys sorted, as the binary search needs
+      for (Map.Entry<Long, Integer> entry : book.entrySet()) {
+        out.writeLong(entry.getKey());
+        out.writeInt(entry.getValue());
+      }
+    }
+  }
+}
@@ -1,60 +1,73 @@
 package mnkgame.AlphaBetaPrugna;
 
-import static mnkgame.AlphaBetaPrugna.Constants.allDirections;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.stream.Collectors;
-
-import mnkgame.AlphaBetaPrugna.TTEntry.Flag;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import mnkgame.MNKCell;
-import mnkgame.MNKCellState;
-import mnkgame.MNKGameState;
 import mnkgame.MNKPlayer;
 
 final public class Player implements MNKPlayer {
   /** Local board. */
   private Board board;
-  /** Timeout converted from seconds to milliseconds. */
-  private long timeoutInMillis;
-  /** We are first player or not. */
-  private boolean first;
-  /** Game State of our and opponent player. */
-  private MNKGameState myWinState, opponentWinState;
-  /** Cell State of our and opponent player. */
-  private MNKCellState myCellState, opponentCellState;
-  /** Instant of the start of our round. */
-  private long startTime;
-  /** Max time for searchin the best move. */
-  private long maxSearchingTime;
+  /** Time budget of our rounds. */
+  private TimeManager timeManager;
   /** Transposition table to mantain visited configurations. */
-  private Map<Long, TTEntry> transpositionTable;
-  /** Thread where execute cleanup. */
-  private Thread transpositionTableCleaner;
-
-  /** A safety limit to exit from Alpha-beta before the end of the round. */
-  private static final int SAFETY_THRESHOLD = 95;
-  /** A default value to return in Alpha-beta if time is finishing. */
-  private static final int SAFETY_HALT = Integer.MAX_VALUE / 2;
-  /** Upper bound value of Alpha-beta. */
-  private static final int INFINITY_POSITIVE = Integer.MAX_VALUE;
-  /** Lower bound value of Alpha-beta. */
-  private static final int INFINITY_NEGATIVE = Integer.MIN_VALUE;
-  /** Score associated to win configuration. */
-  private static final int WINNING_SCORE = 100_000_000;
-  /** Score associated to losing configuration. */
-  private static final int LOSING_SCORE = -WINNING_SCORE;
-  /** Score associated to draw configuration. */
-  private static final int DRAWING_SCORE = 0;
-
-  /** Default empty constructor */
-  public Player() {}
+  private TranspositionTable transpositionTable;
+  /** Entry filled by the transposition table lookups of this class. */
+  private final TTEntry ponderEntry = new TTEntry();
+  /** Threat-space search run on the local board before the others. */
+  private ThreatSearch threatSearch;
+  /** Book of the opening moves of the board size, null if none. */
+  private OpeningBook openingBook;
+  /** Number of threads searching each move. */
+  private final int threads;
+  /** Split the tree among the threads instead of using helpers. */
+  private final boolean ybw;
+  /**
+   * Searches run at each move: the first one on the local board by the
+   * calling thread, the others (helpers) on copies of it by the executor.
+   */
+  private Search[] searches;
+  /** Executor running the helper searches, null without helpers. */
+  private ExecutorService executor;
+  /** Pool of the split workers, null without splitting. */
+  private ForkJoinPool pool;
+  /** Search run on the opponent time, on its own board. */
+  private Search ponderSearch;
+  /** Time budget of the ponder search, without limit. */
+  private TimeManager ponderTimeManager;
+  /** Thread running the ponder search, null if not pondering. */
+  private Thread ponderThread;
+  /** Opponent move predicted by the ponder search. */
+  private int ponderMove;
+  /** Best move found by the ponder search, -1 if none. */
+  private volatile int ponderCell;
+
+  /**
+   * Default empty constructor: it uses {@link Settings#THREADS} and
+   * {@link Settings#YBW}.
+   */
+  public Player() { this(Settings.THREADS, Settings.YBW); }
+
+  /**
+   * Player constructor.
+   *
+   * @param threads number of threads searching each move
+   * @param ybw with more than one thread, split the search tree among the
+   *        threads (Young Brothers Wait) instead of using Lazy SMP helpers
+   * @throws IllegalArgumentException if threads is smaller than 1
+   */
+  public Player(int threads, boolean ybw) throws IllegalArgumentException {
+    if (threads <= 0)
+      throw new IllegalArgumentException("threads must be larger than 0");
+    this.threads = threads;
+    this.ybw = ybw && threads > 1;
+  }
 
   /**
    * {@inheritDoc}
@@ -62,20 +75,35 @@ final public class Player implements MNKPlayer {
   @Override
   public void initPlayer(
           int M, int N, int K, boolean first, int timeoutInSecs) {
-    this.first = first;
     this.board = new Board(M, N, K);
-    this.timeoutInMillis = timeoutInSecs * 1000;
-    this.myWinState = first ? MNKGameState.WINP1 : MNKGameState.WINP2;
-    this.opponentWinState = first ? MNKGameState.WINP2 : MNKGameState.WINP1;
-    this.myCellState = first ? MNKCellState.P1 : MNKCellState.P2;
-    this.opponentCellState = first ? MNKCellState.P2 : MNKCellState.P1;
-    this.maxSearchingTime = (this.timeoutInMillis * SAFETY_THRESHOLD) / 100;
-    this.transpositionTable = new HashMap<>();
-
-    // for (var boardScore : this.board.scores.entrySet()) {
-    //   MNKCell cell = boardScore.getKey();
-    //   int score = boardScore.getValue();
-    //   System.out.format("Cell: %s - Score: %d\n", cell, score);
+    this.timeManager = new TimeManager(timeoutInSecs * 1000L, threads);
+    this.transpositionTable = new TranspositionTable(Settings.TT_SIZE_MB);
+    this.threatSearch = new ThreatSearch(board);
+    this.openingBook = OpeningBook.load(M, N, K);
+
+    int myPlayer = first ? Board.P1 : Board.P2;
+    int helpers = ybw ? 0 : threads - 1;
+    this.searches = new Search[helpers + 1];
+    this.searches[0] = new Search(board, transpositionTable, myPlayer, 0);
+    for (int id = 1; id <= helpers; id++)
+      this.searches[id] = new Search(
+              new Board(board), transpositionTable, myPlayer, id);
+
+    stopPondering();
+    this.ponderSearch = Settings.PONDER
+            ? new Search(new Board(board), transpositionTable, myPlayer, 0)
+            : null;
+    this.ponderTimeManager = new TimeManager(timeoutInSecs * 1000L);
+
+    if (executor != null) executor.shutdownNow();
+    this.executor = helpers > 0 ? newExecutor(helpers) : null;
+    if (pool != null) pool.shutdownNow();
+    this.pool = ybw ? new ForkJoinPool(threads) : null;
+    this.searches[0].setPool(pool);
+
+    // for (int cell = 0; cell < board.SIZE; cell++) {
+    //   int score = board.getCellScore(cell);
+    //   System.out.format("Cell: %d - Score: %d\n", cell, score);
     // }
   }
 
@@ -84,54 +112,103 @@ final public class Player implements MNKPlayer {
    */
   @Override
   public MNKCell selectCell(MNKCell[] FC, MNKCell[] MC) {
-    this.startTime = System.currentTimeMillis();
+    return selectCell(FC, MC, System.nanoTime());
+  }
 
-    // Stop the thread that (if it) was in background
-    if (transpositionTableCleaner != null
-            && transpositionTableCleaner.isAlive()) {
-      transpositionTableCleaner.interrupt();
-      transpositionTableCleaner = null;
-    }
+  /**
+   * Selects the cell like {@link #selectCell(MNKCell[], MNKCell[])} does,
+   * with the round started at the given instant: it is used by the players
+   * that spend part of the round before falling back to this one.
+   *
+   * @param FC free cells
+   * @param MC marked cells
+   * @param startNanos instant of the start of the round, as given by
+   *        <code>System.nanoTime</code>
+   * @return the selected cell
+   */
+  MNKCell selectCell(MNKCell[] FC, MNKCell[] MC, long startNanos) {
+    timeManager.start(startNanos);
+
+    // The ponder search already stored its entries as the ones of this
+    // move, otherwise the entries of the previous searches become the
+    // first to be replaced
+    long ponderTime = stopPondering();
+    if (ponderTime < 0) transpositionTable.newSearch();
 
     // Last available move
     if (FC.length == 1) return FC[0];
 
+    // Update local board with the moves played since our last one (usually
+    // only the opponent last move)
+    for (int k = board.getMarkedCellsCount(); k < MC.length; k++)
+      board.markCell(MC[k]);
+
+    int bestCell = selectCell(MC, ponderTime);
+    board.markCell(bestCell);
+    timeManager.finish();
+    startPondering();
+
+    return new MNKCell(board.row(bestCell), board.column(bestCell));
+  }
+
+  /**
+   * Selects the best move on the local board.
+   *
+   * @param MC marked cells
+   * @param ponderTime time spent by the ponder search on the position
+   *        reached after the opponent move it predicted, -1 if it was not
+   *        pondering
+   * @return index of the selected cell
+   */
+  private int selectCell(MNKCell[] MC, long ponderTime) {
+    int center = board.index(board.M / 2, board.N / 2);
+
     // If we have the first move, we choose the middle cell
-    if (MC.length == 0) {
-      MNKCell cell = new MNKCell(board.M / 2, board.N / 2);
-      board.markCell(cell);
-      return cell;
+    if (MC.length == 0) return center;
+
+    if (MC.length == 1 && board.M == board.N) {
+      MNKCell lastMarkedCell = MC[0];
+      if (lastMarkedCell.i != board.M / 2 && lastMarkedCell.j != board.N / 2)
+        return center;
     }
 
-    // Update local board with the opponent last move
-    if (MC.length > 0) {
-      MNKCell lastMarkedCell = MC[MC.length - 1];
-      board.markCell(lastMarkedCell);
-
-      if (MC.length == 1 && board.M == board.N) {
-        if (lastMarkedCell.i != board.M / 2
-                && lastMarkedCell.j != board.N / 2) {
-          MNKCell cell = new MNKCell(board.M / 2, board.N / 2);
-          board.markCell(cell);
-          return cell;
-        }
+    // A win in one, or the block of the opponent one, is never left to
+    // the book: a key collision or an outdated book could miss it
+    int side = board.currentPlayer();
+    int forcedCell = board.getWinningCell(side);
+    if (forcedCell == -1) forcedCell = board.getWinningCell(1 - side);
+    if (forcedCell != -1) return forcedCell;
+
+    // The book moves were searched much deeper than a round allows
+    if (openingBook != null) {
+      int bookCell = openingBook.lookup(board.hash);
+      if (bookCell >= 0 && bookCell < board.SIZE && board.isFree(bookCell)) {
+        if (Settings.VERBOSE)
+          System.err.format("%s: book move %d,%d\n", playerName(),
+                  board.row(bookCell), board.column(bookCell));
+        return bookCell;
       }
     }
 
-    MNKCell bestCell = iterativeDeepening(board);
-    if (bestCell == null) bestCell = board.pickRandomCell();
-    board.markCell(bestCell);
-
-    // for (var entry : transpositionTable.entrySet()) {
-    //   System.out.format("Board hash: %d ---- %s\n",
-    //                      entry.getKey(),
-    //                      entry.getValue().toString());
-
-    // Start thread in background for cleaning the
-    // transposition table
-    transpositionTableCleaner = new Thread(new TTCleaner(), "TT Cleaner");
-    transpositionTableCleaner.start();
+    // Forced wins and must-blocks don't need the full search
+    int threatCell = searchThreats();
+    if (threatCell != -1) return threatCell;
+
+    // On a ponder hit, a search long enough answers at once
+    boolean isPonderHit = ponderTime >= 0
+            && board.getLastMarkedCell() == ponderMove
+            && board.getMarkedCellsCount()
+                    == ponderSearch.getBoard().getMarkedCellsCount();
+    if (isPonderHit && ponderCell != -1 && board.isFree(ponderCell)
+            && ponderTime >= timeManager.getLimitMillis() / 2) {
+      if (Settings.VERBOSE)
+        System.err.format("%s: ponder hit, depth %d, %d ms pondering\n",
+                playerName(), ponderSearch.getCompletedDepth(), ponderTime);
+      return ponderCell;
+    }
 
+    int bestCell = search();
+    if (bestCell == -1) bestCell = board.pickRandomCell();
     return bestCell;
   }
 
@@ -144,277 +221,183 @@ final public class Player implements MNKPlayer {
   }
 
   /**
-   * Class that implements a Runnable object for the
-   * transposition cleanup thread.
-   */
-  private class TTCleaner implements Runnable {
-    @Override
-    public void run() {
-      long hash = 0;
-
-      // Remove from transposition table useless configurations
-      for (MNKCell cell : board.getMarkedCells()) {
-        hash = board.zobrist.updateZobrist(hash, cell);
-
-        TTEntry ttEntry = transpositionTable.get(hash);
-        if (ttEntry != null) transpositionTable.remove(hash);
-      }
-    }
-  }
-
-  /**
-   * Calls alpha beta by increasing the depth until the time runs out.
+   * Runs the threat-space search on the local board, for at most
+   * {@link Settings#THREAT_SEARCH_MS}.
    *
-   * @param board board to evaluate
-   * @return best cell move
+   * @return index of a winning move or of a cell to block, -1 if none
    */
-  private MNKCell iterativeDeepening(Board board) {
-    MNKCell bestCell = null;
+  private int searchThreats() {
+    if (Settings.THREAT_SEARCH_MS <= 0) return -1;
 
-    for (int depth = 1; depth <= board.getFreeCells().length; depth++) {
-      List<Object> values = alphaBetaAtRoot(board, depth);
-      MNKCell cell = (MNKCell) values.get(0);
-      int score = (int) values.get(1);
+    long limit = timeManager.getLimitMillis();
+    long timeLimit = Math.min(Settings.THREAT_SEARCH_MS, limit / 10);
+    int cell = threatSearch.search(timeLimit);
 
-      if (isTimeFinishing() || score == SAFETY_HALT) break;
+    if (Settings.VERBOSE && cell != -1)
+      System.err.format("%s: threat search move %d,%d, %d ms, %d nodes\n",
+              playerName(), board.row(cell), board.column(cell),
+              timeManager.getElapsedMillis(), threatSearch.getNodes());
 
-      bestCell = cell;
-    }
-
-    return bestCell;
+    return cell;
   }
 
   /**
-   * Alpha-beta execution on the root of the game tree.
+   * Searches the best move on the local board with all the threads.
+   * <p>With YBW the main search splits its tree among the pool workers by
+   * itself. Otherwise (Lazy SMP) the helpers search the same position on
+   * their own boards, sharing
+   * with the main search only the transposition table: they fill it with
+   * results that the main search finds ready, and they stop as soon as the
+   * main search ends. The move of the search that completed the deepest
+   * iteration is returned, the main search one on ties.</p>
    *
-   * @param board board to evaluate
-   * @param depth max reachable depth
-   * @return list containing bestCell with its bestScore
+   * @return index of the best cell move, -1 if none was found in time
    */
-  private List<Object> alphaBetaAtRoot(Board board, int depth) {
-    MNKCell bestCell = null;
-    int bestScore = INFINITY_NEGATIVE;
-
-    MNKCell[] sortedMoves = sortMoves(board);
-    for (MNKCell cell : sortedMoves) {
-      board.markCell(cell);
-      int score = alphaBetaWithMemory(
-              board, depth, INFINITY_NEGATIVE, INFINITY_POSITIVE, false);
-      board.unmarkCell();
-
-      if (isTimeFinishing() || score == SAFETY_HALT) break;
-
-      if (score > bestScore) {
-        bestScore = score;
-        bestCell = cell;
+  private int search() {
+    int count = searches.length;
+    Future<?>[] helpers = new Future<?>[count];
+    int[] bestCells = new int[count];
+    for (int id = 1; id < count; id++) {
+      Search helper = searches[id];
+      helper.getBoard().copyFrom(board);
+      helper.prepare(timeManager);
+
+      int slot = id;
+      helpers[id] = executor.submit(() -> {
+        bestCells[slot] = helper.search();
+      });
+    }
+
+    searches[0].prepare(timeManager);
+    bestCells[0] = searches[0].search();
+
+    for (int id = 1; id < count; id++) searches[id].stop();
+    for (int id = 1; id < count; id++) {
+      try {
+        helpers[id].get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // A failed helper does not change the result of the main search
+        bestCells[id] = -1;
       }
     }
 
-    return Arrays.asList(bestCell, bestScore);
+    int best = 0;
+    for (int id = 1; id < count; id++)
+      if (bestCells[id] != -1 && searches[id].getCompletedDepth()
+              > searches[best].getCompletedDepth())
+        best = id;
+
+    if (Settings.VERBOSE) {
+      Search main = searches[0];
+      System.err.format("%s: %s depth %d (thread %d), score %d, %d ms, "
+                      + "%d nodes, %d threads%s, aspiration re-searches "
+                      + "%d/%d (game %d/%d), margin %d ms\n",
+              playerName(),
+              Settings.MTDF ? "mtdf" : Settings.PVS ? "pvs" : "alphabeta",
+              searches[best].getCompletedDepth(), best,
+              searches[best].getCompletedScore(),
+              timeManager.getElapsedMillis(), getNodes(), threads,
+              ybw ? " (ybw)" : "",
+              main.getMoveAspirationResearches(),
+              main.getMoveAspirationSearches(),
+              main.getAspirationResearches(), main.getAspirationSearches(),
+              timeManager.getMarginMillis());
+    }
+
+    return bestCells[best];
   }
 
   /**
-   * Implements AlphaBeta algorithm with transposition table.
-   *
-   * @param board board to evaluate
-   * @param depth max reachable depth
-   * @param alpha lower bound value
-   * @param beta upper bound value
-   * @param isMaximizing true if is a maximizing node, false otherwise
-   * @return best evaluated score
+   * Starts searching, on a background thread, the position reached after
+   * the opponent reply predicted by the transposition table, if any (see
+   * {@link Settings#PONDER}).
    */
-  private int alphaBetaWithMemory(
-          Board board, int depth, int alpha, int beta, boolean isMaximizing) {
-    int alphaOrig = alpha;
-
-    /**
-     * Transposition table lookup.
-     */
-    TTEntry entry = transpositionTable.getOrDefault(board.hash, null);
-    if (entry != null && entry.depth >= depth) {
-      if (entry.flag == Flag.EXACT)
-        return entry.score;
-      else if (entry.flag == Flag.ALPHA)
-        alpha = Math.max(alpha, entry.score);
-      else if (entry.flag == Flag.BETA)
-        beta = Math.min(beta, entry.score);
-      if (alpha >= beta) return entry.score;
-    }
-
-    if (isTimeFinishing()) return SAFETY_HALT;
-    if (depth == 0 || !board.isGameOpen()) return eval(board, depth);
-
-    MNKCell[] sortedCells = sortMoves(board);
-    int eval = isMaximizing ? INFINITY_NEGATIVE : INFINITY_POSITIVE;
-    for (MNKCell cell : sortedCells) {
-      board.markCell(cell);
-
-      int score =
-              alphaBetaWithMemory(board, depth - 1, alpha, beta, !isMaximizing);
-      if (isMaximizing)
-        alpha = Math.max(alpha, eval = Math.max(eval, score));
-      else
-        beta = Math.min(beta, eval = Math.min(eval, score));
-
-      board.unmarkCell();
-      if (beta <= alpha) break;
-    }
-
-    /*
-     * Traditional transposition table storing of bounds.
-     */
-    TTEntry newEntry = new TTEntry();
-    newEntry.score = eval;
-    newEntry.depth = depth;
-    if (eval <= alphaOrig)
-      newEntry.flag = Flag.BETA;
-    else if (eval >= beta)
-      newEntry.flag = Flag.ALPHA;
-    else
-      newEntry.flag = Flag.EXACT;
-    transpositionTable.putIfAbsent(board.hash, newEntry);
-
-    return eval;
+  private void startPondering() {
+    if (ponderSearch == null || !board.isGameOpen()) return;
+    if (!transpositionTable.probe(board.hash, ponderEntry)) return;
+
+    int reply = ponderEntry.move;
+    if (reply == -1 || !board.isFree(reply)) return;
+
+    Board ponderBoard = ponderSearch.getBoard();
+    ponderBoard.copyFrom(board);
+    ponderBoard.markCell(reply);
+    if (!ponderBoard.isGameOpen()) return;
+
+    // The ponder search stores its entries as the ones of the next move
+    transpositionTable.newSearch();
+    this.ponderMove = reply;
+    this.ponderCell = -1;
+    ponderTimeManager.startUnlimited(System.nanoTime());
+    ponderSearch.prepare(ponderTimeManager);
+
+    this.ponderThread = new Thread(() -> {
+      ponderCell = ponderSearch.search();
+    }, "AlphaBetaPrugna-ponder");
+    ponderThread.setDaemon(true);
+    ponderThread.start();
   }
 
   /**
-   * It gives a score to the given board given.
+   * Stops the ponder search, if running, and waits for its end.
    *
-   * @param board board to be evaluate
-   * @param depth depth reached
-   * @return the board score
+   * @return the time spent pondering in milliseconds, -1 if it was not
+   *         pondering
    */
-  private int eval(Board board, int depth) {
-    MNKGameState state = board.gameState();
-
-    if (first) {
-      if (state.equals(myWinState))
-        return WINNING_SCORE + depth;
-      else if (state.equals(opponentWinState))
-        return LOSING_SCORE - depth;
-    } else {
-      if (state.equals(opponentWinState))
-        return LOSING_SCORE - depth;
-      else if (state.equals(myWinState))
-        return WINNING_SCORE + depth;
+  private long stopPondering() {
+    if (ponderThread == null) return -1;
+
+    ponderSearch.stop();
+    try {
+      ponderThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
+    ponderThread = null;
 
-    if (state.equals(MNKGameState.DRAW)) return DRAWING_SCORE + depth;
-
-    MNKCell lastMarked = board.getLastMarkedCell();
-    int evalLastMarked = new Eval(board, lastMarked).eval();
-
-    if (first)
-      return lastMarked.state == myCellState ? evalLastMarked + depth
-                                             : -evalLastMarked - depth;
-    else
-      return lastMarked.state == myCellState ? -evalLastMarked - depth
-                                             : +evalLastMarked + depth;
+    return ponderTimeManager.getElapsedMillis();
   }
 
   /**
-   * Sort the cells in a circular way (starting from up-left direction).
+   * Returns the nodes visited by all the threads during the last search.
    *
-   * @param lastCell last marked cell
-   * @param FCSize free cells size
-   * @return list of sorted moves
+   * Time complexity: O(threads)
    */
-  private List<MNKCell> sortCellsInCircularWay(
-          Board board, MNKCell lastCell, int FCSize) {
-    Map<MNKCell, Integer> sortedFreeCells = new LinkedHashMap<>(FCSize);
-    List<Point> copyDirections = new ArrayList<>(allDirections.values());
-    List<Point> invalidDirections = new ArrayList<>();
-
-    for (int i = 1; i <= board.K; i++) {
-      for (var direction : copyDirections) {
-        int x = lastCell.i + direction.x * i;
-        int y = lastCell.j + direction.y * i;
-
-        // If for the current value of "i" the cell is out of bounds of
-        // the board it will surely be for the following ones too,
-        // we can therefore add this "direction" in the list of invalid
-        // directions.
-        if (!board.isCellInBounds(x, y)) {
-          invalidDirections.add(direction);
-          continue;
-        }
-
-        // We check the status of the cell on the board,
-        // if this is Free then we insert it in the "sortedFreeCells"
-        if (board.cellState(x, y) == MNKCellState.FREE) {
-          MNKCell cell = new MNKCell(x, y);
-          sortedFreeCells.putIfAbsent(cell, board.getCellScore(cell));
-        }
-      }
-
-      // We remove invalid directions from copyDirections
-      for (var notValidDirection : invalidDirections)
-        copyDirections.remove(notValidDirection);
-
-      // If we have no more directions in which to move,
-      // it makes no sense to continue and therefore we
-      // can exit the for.
-      if (copyDirections.size() == 0) break;
-
-      // Restore to initial state invalidDirections
-      invalidDirections.removeAll(invalidDirections);
-    }
-
-    // Sort the moves based on the board scores
-    Map<MNKCell, Integer> sorted =
-            sortedFreeCells.entrySet()
-                    .stream()
-                    .sorted(Entry.<MNKCell, Integer>comparingByValue()
-                                    .reversed())
-                    .collect(Collectors.toMap(Entry::getKey, Entry::getValue,
-                            (e1, e2) -> e1, LinkedHashMap::new));
-
-    return Arrays.asList(sorted.keySet().toArray(new MNKCell[0]));
+  long getNodes() {
+    long nodes = 0;
+    for (Search search : searches) nodes += search.getNodes();
+    return nodes;
   }
 
   /**
-   * Sort the moves according to the state of the board.
+   * Returns the deepest iteration completed during the last search.
    *
-   * @param board current board
-   * @return the array of sorted cells
+   * Time complexity: O(threads)
    */
-  private MNKCell[] sortMoves(Board board) {
-    HashSet<MNKCell> FC = new HashSet<MNKCell>(board.getFCSet());
-    int size = FC.size();
-    List<MNKCell> sortedFreeCells = new ArrayList<>();
-    MNKCell myLastMarkedCell = board.getLastMarkedCell(myCellState);
-    MNKCell opponentLastMarkedCell = board.getLastMarkedCell(opponentCellState);
-
-    if (myLastMarkedCell != null) {
-      List<MNKCell> mySortedCells =
-              sortCellsInCircularWay(board, myLastMarkedCell, size);
-      sortedFreeCells.addAll(mySortedCells);
-      FC.removeAll(mySortedCells);
-    }
-
-    if (opponentLastMarkedCell != null) {
-      List<MNKCell> opponentSortedCells =
-              sortCellsInCircularWay(board, opponentLastMarkedCell, size);
-
-      for (MNKCell cell : opponentSortedCells) {
-        if (!sortedFreeCells.contains(cell)) {
-          sortedFreeCells.add(cell);
-          FC.remove(cell);
-        }
-      }
-    }
-
-    sortedFreeCells.addAll(FC);
-    return sortedFreeCells.toArray(new MNKCell[0]);
+  int getCompletedDepth() {
+    int depth = 0;
+    for (Search search : searches)
+      depth = Math.max(depth, search.getCompletedDepth());
+    return depth;
   }
 
   /**
-   * Check if the time is running out.
+   * Creates the executor of the helper searches: its threads are daemons,
+   * so they never keep the JVM alive, and they die after a minute of idle.
    *
-   * @return true if the maxSearchingTime has been exceeded, false otherwise
+   * @param helpers number of helper threads
+   * @return the executor
    */
-  private boolean isTimeFinishing() {
-    long elapsedTime = System.currentTimeMillis() - this.startTime;
-    return elapsedTime > this.maxSearchingTime;
+  private static ExecutorService newExecutor(int helpers) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(helpers, helpers, 60,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+              Thread thread = new Thread(runnable, "AlphaBetaPrugna-helper");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 }
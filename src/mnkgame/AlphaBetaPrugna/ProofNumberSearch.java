@@ -0,0 +1,371 @@
+package mnkgame.AlphaBetaPrugna;
+
+import mnkgame.MNKGameState;
+
+/**
+ * Depth-first proof-number search (df-pn) solver.
+ *
+ * <p>It proves or disproves that the player to move on the board (the
+ * attacker) reaches a goal, a win or at least a draw, whatever the
+ * opponent does: both goals are needed to know the exact value of a
+ * position. The proof and disproof numbers of the visited positions are
+ * kept in a table indexed by their zobrist key, and the table is kept
+ * between the searches, so the positions already solved (e.g. the ones
+ * of the previous moves of a game) are solved again in no time.</p>
+ *
+ * <p>The moves are all the free cells, except when the player to move has
+ * to block a win in one of the opponent: the proofs are exact.</p>
+ */
+final public class ProofNumberSearch {
+  /** Goal of the attacker. */
+  public static enum Goal {
+    /** The attacker wins. */
+    WIN,
+    /** The attacker does not lose. */
+    DRAW
+  }
+
+  /** Result of a search. */
+  public static enum Result {
+    /** The goal is reached against any defence. */
+    PROVEN,
+    /** The defender can avoid the goal. */
+    DISPROVEN,
+    /** The search ran out of time. */
+    UNKNOWN
+  }
+
+  /** Proof or disproof number of a solved position. */
+  private static final int INFINITY = 1 << 28;
+  /** Bytes used by an entry of the table (key, proof and disproof). */
+  private static final int ENTRY_BYTES = 16;
+  /** Keys xored with the zobrist key to tell apart the goals. */
+  private static final long[] GOAL_KEYS = {0L, 0x9E3779B97F4A7C15L};
+  /** Entries of a bucket of the table: solved-preferred, always-replace. */
+  private static final int BUCKET_SIZE = 2;
+  /** How many nodes are visited between two time checks. */
+  private static final int TIME_CHECK_NODES = 1024;
+
+  /** Board to search on, shared with the caller. */
+  private final Board board;
+  /** Zobrist keys of the table entries. */
+  private final long[] keys;
+  /** Proof and disproof numbers of the table entries. */
+  private final int[] proofs, disproofs;
+  /** Mask used to map a key to the first entry of its bucket. */
+  private final int mask;
+  /**
+   * Moves of the positions on the search path, by ply: each array is
+   * allocated the first time its ply is reached, then reused.
+   */
+  private final int[][] moves;
+  /** Player to move at the root of the search. */
+  private int attacker;
+  /** Goal of the current search. */
+  private Goal goal;
+  /** Instant after which the search gives up, as given by nanoTime. */
+  private long deadline;
+  /** Set when the deadline is reached. */
+  private boolean timeOver;
+  /** Move of the root that reaches the goal, after a proof. */
+  private int provenMove;
+  /** Nodes visited by the last search. */
+  private long nodes;
+
+  /**
+   * ProofNumberSearch constructor.
+   *
+   * Time complexity: O(sizeInMB)
+   *
+   * @param board board to search on: it is modified during the search but
+   *        restored before returning
+   * @param sizeInMB memory budget of the table in megabytes
+   */
+  public ProofNumberSearch(Board board, int sizeInMB) {
+    long entries = Math.max(1, (long) sizeInMB) * 1024 * 1024 / ENTRY_BYTES;
+    int size = (int) Math.min(Long.highestOneBit(entries), 1 << 28);
+    size = Math.max(size, BUCKET_SIZE);
+
+    this.board = board;
+    this.keys = new long[size];
+    this.proofs = new int[size];
+    this.disproofs = new int[size];
+    this.mask = (size - 1) & -BUCKET_SIZE;
+    this.moves = new int[board.SIZE + 1][];
+  }
+
+  /**
+   * Searches whether the player to move reaches the given goal.
+   *
+   * @param goal goal of the player to move
+   * @param timeLimit max time of the search in milliseconds
+   * @return PROVEN, DISPROVEN or UNKNOWN if the time ran out
+   */
+  public Result solve(Goal goal, long timeLimit) {
+    this.attacker = board.currentPlayer();
+    this.goal = goal;
+    this.deadline = System.nanoTime() + timeLimit * 1_000_000;
+    this.timeOver = false;
+    this.provenMove = -1;
+    this.nodes = 0;
+
+    if (!board.isGameOpen()) return Result.UNKNOWN;
+
+    // A position solved by a previous search is not searched again
+    long key = key(board.hash);
+    int slot = find(key);
+    if (slot == -1 || !isSolved(slot)) {
+      mid(INFINITY, INFINITY, 0);
+      slot = find(key);
+    }
+
+    if (slot == -1 || !isSolved(slot)) return Result.UNKNOWN;
+    if (proofs[slot] != 0) return Result.DISPROVEN;
+
+    provenMove = findProvenMove();
+    return Result.PROVEN;
+  }
+
+  /**
+   * Returns the move of the root that reaches the goal, after a proof.
+   *
+   * @return index of the move, -1 if the last search was not a proof
+   */
+  public int getProvenMove() { return provenMove; }
+
+  /** Returns the nodes visited by the last search. */
+  public long getNodes() { return nodes; }
+
+  /**
+   * Multiple iterative deepening on the board: it expands the most
+   * proving node until the proof or the disproof number of the board
+   * reaches its threshold, then stores them in the table.
+   *
+   * @param proofThreshold threshold of the proof number
+   * @param disproofThreshold threshold of the disproof number
+   * @param ply number of moves played from the root of the search
+   */
+  private void mid(int proofThreshold, int disproofThreshold, int ply) {
+    nodes++;
+    if (nodes % TIME_CHECK_NODES == 0
+            && System.nanoTime() - deadline > 0)
+      timeOver = true;
+    if (timeOver) return;
+
+    long key = key(board.hash);
+    int side = board.currentPlayer();
+    boolean isOr = side == attacker;
+
+    int[] moves = movesAt(ply);
+    int count = generateMoves(side, moves);
+    if (count < 0) {
+      // The side to move wins (-1) or loses (-2) in one
+      boolean isAttackerWin = (count == -1) == isOr;
+      store(key, isAttackerWin ? 0 : INFINITY, isAttackerWin ? INFINITY : 0);
+      return;
+    }
+
+    while (true) {
+      // The OR node needs one proven child, the AND node all of them
+      int proof = isOr ? INFINITY : 0;
+      int disproof = isOr ? 0 : INFINITY;
+      int best = -1, bestValue = INFINITY, secondValue = INFINITY;
+      int bestProof = 0, bestDisproof = 0;
+
+      for (int k = 0; k < count; k++) {
+        int cell = moves[k];
+        long childKey =
+                key(board.zobrist.updateZobrist(board.hash, side, cell));
+        int slot = find(childKey);
+        int childProof = 1, childDisproof = 1;
+        if (slot != -1) {
+          childProof = proofs[slot];
+          childDisproof = disproofs[slot];
+        }
+
+        int value = isOr ? childProof : childDisproof;
+        if (isOr) {
+          proof = Math.min(proof, childProof);
+          disproof = Math.min(INFINITY, disproof + childDisproof);
+        } else {
+          proof = Math.min(INFINITY, proof + childProof);
+          disproof = Math.min(disproof, childDisproof);
+        }
+
+        if (value < bestValue) {
+          secondValue = bestValue;
+          bestValue = value;
+          best = cell;
+          bestProof = childProof;
+          bestDisproof = childDisproof;
+        } else if (value < secondValue) {
+          secondValue = value;
+        }
+      }
+
+      if (proof >= proofThreshold || disproof >= disproofThreshold
+              || timeOver) {
+        store(key, proof, disproof);
+        return;
+      }
+
+      int childProofThreshold, childDisproofThreshold;
+      if (isOr) {
+        childProofThreshold = Math.min(proofThreshold, secondValue + 1);
+        childDisproofThreshold = disproofThreshold - disproof + bestDisproof;
+      } else {
+        childProofThreshold = proofThreshold - proof + bestProof;
+        childDisproofThreshold = Math.min(disproofThreshold, secondValue + 1);
+      }
+
+      board.markCell(best);
+      if (board.isGameOpen())
+        mid(childProofThreshold, childDisproofThreshold, ply + 1);
+      else
+        storeTerminal();
+      board.unmarkCell();
+    }
+  }
+
+  /**
+   * Generates the moves of the side to move: the block of the opponent
+   * win in one if there is one, all the free cells otherwise.
+   *
+   * Time complexity: O(1) in forced positions, O(M * N) otherwise
+   *
+   * @param side player to move
+   * @param out array where to store the moves
+   * @return number of moves, -1 if side wins in one, -2 if side cannot
+   *         avoid a loss in one
+   */
+  private int generateMoves(int side, int[] out) {
+    if (board.getWinningCellsCount(side) > 0) return -1;
+
+    int blocks = board.getWinningCellsCount(1 - side);
+    if (blocks > 1) return -2;
+    if (blocks == 1) {
+      out[0] = board.getWinningCell(1 - side);
+      return 1;
+    }
+
+    return board.getFreeCells(out);
+  }
+
+  /**
+   * Stores the proof and disproof numbers of the ended game on the board.
+   *
+   * Time complexity: O(1)
+   */
+  private void storeTerminal() {
+    MNKGameState state = board.gameState();
+    boolean isProven;
+    if (state == MNKGameState.DRAW)
+      isProven = goal == Goal.DRAW;
+    else
+      isProven = state == (attacker == Board.P1 ? MNKGameState.WINP1
+                                                : MNKGameState.WINP2);
+    store(key(board.hash), isProven ? 0 : INFINITY, isProven ? INFINITY : 0);
+  }
+
+  /**
+   * Returns a move of the root whose position is proven.
+   *
+   * Time complexity: O(M * N)
+   *
+   * @return index of the move, -1 if none is found
+   */
+  private int findProvenMove() {
+    int side = board.currentPlayer();
+    int[] moves = movesAt(0);
+    int count = board.getFreeCells(moves);
+
+    for (int k = 0; k < count; k++) {
+      board.markCell(moves[k]);
+      int slot = find(key(board.hash));
+      boolean isProven;
+      if (!board.isGameOpen())
+        isProven = board.gameState() != MNKGameState.DRAW || goal == Goal.DRAW;
+      else
+        isProven = slot != -1 && isSolved(slot) && proofs[slot] == 0;
+      board.unmarkCell();
+
+      if (isProven) return moves[k];
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the moves array of a ply, allocating it the first time.
+   *
+   * Time complexity: O(1), O(M * N) the first time
+   */
+  private int[] movesAt(int ply) {
+    if (moves[ply] == null) moves[ply] = new int[board.SIZE];
+    return moves[ply];
+  }
+
+  /**
+   * Stores the proof and disproof numbers of a position.
+   *
+   * <p>The first entry of the bucket keeps the solved positions, which are
+   * never replaced by an unsolved one there: an unsolved position goes to
+   * the second entry, replacing whatever it holds, so the position being
+   * searched is always stored and its search makes progress. A solved
+   * position moves the solved one of the first entry to the second.</p>
+   *
+   * Time complexity: O(1)
+   */
+  private void store(long key, int proof, int disproof) {
+    int slot = find(key);
+    if (slot == -1) {
+      int first = slot(key), second = first + 1;
+      boolean isSolved = proof == 0 || disproof == 0;
+      if (!isSolved && isSolved(first)) {
+        slot = second;
+      } else {
+        if (isSolved(first)) copy(first, second);
+        slot = first;
+      }
+    }
+
+    keys[slot] = key;
+    proofs[slot] = proof;
+    disproofs[slot] = disproof;
+  }
+
+  /**
+   * Returns the entry of a key.
+   *
+   * Time complexity: O(1)
+   *
+   * @return the entry, -1 if the key is not in the table
+   */
+  private int find(long key) {
+    int first = slot(key);
+    if (keys[first] == key) return first;
+    if (keys[first + 1] == key) return first + 1;
+    return -1;
+  }
+
+  /** Copies an entry of the table into another one. */
+  private void copy(int from, int to) {
+    keys[to] = keys[from];
+    proofs[to] = proofs[from];
+    disproofs[to] = disproofs[from];
+  }
+
+  /**
+   * Checks if the entry is solved: solved entries have exactly one number
+   * equal to 0, empty ones both.
+   */
+  private boolean isSolved(int slot) {
+    return (proofs[slot] == 0) != (disproofs[slot] == 0);
+  }
+
+  /** Returns the key of a position for the current goal. */
+  private long key(long hash) { return hash ^ GOAL_KEYS[goal.ordinal()]; }
+
+  /** Returns the first entry of the bucket of a key. */
+  private int slot(long key) { return (int) (key ^ (key >>> 32)) & mask; }
+}
@@ -0,0 +1,1412 @@
+package mnkgame.AlphaBetaPrugna;
+
+import static mnkgame.AlphaBetaPrugna.Constants.DIRECTIONS;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnkgame.AlphaBetaPrugna.TTEntry.Flag;
+import mnkgame.MNKGameState;
+
+/**
+ * Iterative deepening alpha-beta search on a board.
+ *
+ * <p>A Search owns its board and all the state needed by the search, so
+ * several instances can run at the same time on different threads, sharing
+ * only the (lockless) transposition table. Scores are evaluated from the
+ * point of view of the player given to the constructor.</p>
+ *
+ * <p>Given a fork/join pool (see {@link #setPool(ForkJoinPool)}) a search
+ * also splits its own tree with the Young Brothers Wait rule: at the root,
+ * and at the PV nodes where some worker is idle, the first move is searched
+ * serially and the remaining ones in parallel, each on a copy of the board,
+ * sharing the best score found so far as their alpha bound.</p>
+ */
+final public class Search {
+  /** Board to search on. */
+  private final Board board;
+  /** Search started by the player, it is this one unless a split worker. */
+  private final Search root;
+  /** Split point whose move a split worker searches, null otherwise. */
+  private SplitPoint split;
+  /** Pool of the parallel (YBW) search, null for a serial search. */
+  private ForkJoinPool pool;
+  /**
+   * Split workers not in use, with their boards, by pool thread (a thread
+   * may run a nested sibling task while waiting for its own, so it needs
+   * one worker per task it runs); null in the split workers.
+   */
+  private final ThreadLocal<ArrayDeque<Search>> workers;
+  /** Identifier of the search: 0 for the main one, &gt; 0 for helpers. */
+  private final int id;
+  /** We are first player or not. */
+  private final boolean first;
+  /** Game State of our and opponent player. */
+  private final MNKGameState myWinState, opponentWinState;
+  /** Board index (P1 or P2) of our and opponent player. */
+  private final int myPlayer, opponentPlayer;
+  /** Transposition table to mantain visited configurations. */
+  private final TranspositionTable transpositionTable;
+  /** Entry filled by the transposition table lookups. */
+  private final TTEntry ttEntry;
+  /** Stamp of the cells already added by the current sortMoves call. */
+  private final int[] seen;
+  /** Stamp of the current sortMoves call. */
+  private int seenStamp;
+  /** Two moves per ply (marked cells count) that caused a cutoff. */
+  private final int[][] killers;
+  /** Butterfly history: cutoffs of each cell for each side to move. */
+  private final int[][] history;
+  /** Last move of each side that refuted each move of the other side. */
+  private final int[][] counterMoves;
+  /** Time budget of the current search. */
+  private TimeManager timeManager;
+  /** Calls of isTimeFinishing since the last time check. */
+  private int timeChecks;
+  /** Set to stop the search before its time is over. */
+  private volatile boolean stopped;
+  /** Aspiration searches done, and how many of them failed (this game). */
+  private int aspirationSearches, aspirationResearches;
+  /** Aspiration searches done, and how many of them failed (this move). */
+  private int moveAspirationSearches, moveAspirationResearches;
+  /** Half width of the aspiration window, for the K of the board. */
+  private final int aspirationWindow;
+  /** Nodes visited by the last search. */
+  private long nodes;
+  /** Nodes still available to the current quiescence search. */
+  private int quiescenceBudget;
+  /** Moves of each ply of the quiescence search. */
+  private final int[][] quiescenceMoves;
+  /** Cells of a line through a move, used by collectThreats. */
+  private final int[] lineCells;
+  /** Candidate cells of the board, used by sortMoves. */
+  private final int[] candidateCells;
+  /**
+   * Moves of the nodes on the search path, by number of marked cells:
+   * each array is allocated the first time its ply is reached, and again
+   * only when the candidate cells outgrow it.
+   */
+  private final int[][] moveLists;
+  /** Nodes visited by the split workers of the last search. */
+  private final AtomicLong splitNodes;
+  /** Last depth completed, and its score, by the last search. */
+  private int completedDepth, completedScore;
+  /** Moves of the root, sorted by the scores of the last iteration. */
+  private int[] rootMoves;
+  /** Scores of the root moves in the last iteration. */
+  private int[] rootScores;
+  /**
+   * Root move of the current iteration proven better than the ones
+   * searched before it, -1 if none: it is played if the iteration is
+   * interrupted.
+   */
+  private int salvagedCell;
+
+  /** A default value to return in Alpha-beta if time is finishing. */
+  private static final int SAFETY_HALT = Integer.MAX_VALUE / 2;
+  /** Upper bound value of Alpha-beta. */
+  private static final int INFINITY_POSITIVE = Integer.MAX_VALUE;
+  /** Lower bound value of Alpha-beta. */
+  private static final int INFINITY_NEGATIVE = -INFINITY_POSITIVE;
+  /** Score associated to win configuration. */
+  private static final int WINNING_SCORE = 100_000_000;
+  /** Score associated to losing configuration. */
+  private static final int LOSING_SCORE = -WINNING_SCORE;
+  /** Score associated to draw configuration. */
+  private static final int DRAWING_SCORE = 0;
+  /** How many of the last moves of each player drive the move ordering. */
+  private static final int SORTING_LAST_MOVES = 2;
+  /** Directions of the lines: horizontal, vertical and diagonals. */
+  private static final Point[] LINE_DIRECTIONS = {
+          Constants.RIGHT, Constants.DOWN, Constants.DOWN_RIGHT,
+          Constants.DOWN_LEFT};
+  /** How many of the last moves of each player start a threat. */
+  private static final int THREAT_LAST_MOVES = 2;
+  /** Number of killer moves kept for each ply. */
+  private static final int KILLERS = 2;
+  /** Moves of a node that may not be candidates: hash, killers, counter. */
+  private static final int EXTRA_MOVES = 1 + KILLERS + 1;
+  /** History score over which all the history scores are halved. */
+  private static final int MAX_HISTORY = 1 << 24;
+  /** K for which {@link Settings#ASPIRATION_WINDOW} is tuned. */
+  private static final int ASPIRATION_K = 5;
+  /** Aspiration searches of a game after which the fail rate counts. */
+  private static final int ASPIRATION_MIN_SEARCHES = 8;
+  /** Min depth of the PV nodes below the root that are split. */
+  private static final int MIN_SPLIT_DEPTH = 3;
+  /** How many calls of isTimeFinishing happen between two time checks. */
+  private static final int TIME_CHECK_INTERVAL = 1024;
+
+  /**
+   * Search constructor.
+   *
+   * @param board board to search on, owned by this search
+   * @param transpositionTable transposition table, can be shared
+   * @param myPlayer player (P1 or P2) whose point of view is evaluated
+   * @param id 0 for the main search, &gt; 0 for a helper search: helpers
+   *        start from a deeper depth and shuffle their move order a bit
+   */
+  public Search(Board board, TranspositionTable transpositionTable,
+          int myPlayer, int id) {
+    this.board = board;
+    this.root = this;
+    this.split = null;
+    this.workers = ThreadLocal.withInitial(ArrayDeque::new);
+    this.id = id;
+    this.first = myPlayer == Board.P1;
+    this.myWinState = first ? MNKGameState.WINP1 : MNKGameState.WINP2;
+    this.opponentWinState = first ? MNKGameState.WINP2 : MNKGameState.WINP1;
+    this.myPlayer = myPlayer;
+    this.opponentPlayer = 1 - myPlayer;
+    this.transpositionTable = transpositionTable;
+    this.ttEntry = new TTEntry();
+    this.seen = new int[board.SIZE];
+    this.seenStamp = 0;
+    this.killers = new int[board.SIZE + 1][KILLERS];
+    this.history = new int[2][board.SIZE];
+    this.counterMoves = new int[2][board.SIZE];
+    for (int[] ply : killers) Arrays.fill(ply, -1);
+    for (int[] side : counterMoves) Arrays.fill(side, -1);
+    this.quiescenceMoves = newQuiescenceMoves(board);
+    this.lineCells = new int[2 * board.K - 1];
+    this.candidateCells = new int[board.SIZE];
+    this.moveLists = new int[board.SIZE + 1][];
+    this.aspirationSearches = 0;
+    this.aspirationResearches = 0;
+    this.aspirationWindow = Settings.ASPIRATION_WINDOW * board.K / ASPIRATION_K;
+    this.splitNodes = new AtomicLong();
+  }
+
+  /**
+   * Split worker constructor: it searches the moves of the split points of
+   * the given root search on its own board, with the settings of the root
+   * search. It is kept by its pool thread between the tasks.
+   *
+   * @param root search started by the player
+   * @param board board of the same size, created by the copy constructor
+   *        from the root board (or one of its copies), owned by this search
+   */
+  private Search(Search root, Board board) {
+    this.board = board;
+    this.root = root;
+    this.split = null;
+    this.workers = null;
+    this.pool = root.pool;
+    this.id = root.id;
+    this.first = root.first;
+    this.myWinState = root.myWinState;
+    this.opponentWinState = root.opponentWinState;
+    this.myPlayer = root.myPlayer;
+    this.opponentPlayer = root.opponentPlayer;
+    this.transpositionTable = root.transpositionTable;
+    this.ttEntry = new TTEntry();
+    this.seen = new int[board.SIZE];
+    this.seenStamp = 0;
+    // The heuristics are shared with the root search: concurrent updates
+    // can be lost, which only makes the move ordering a bit worse
+    this.killers = root.killers;
+    this.history = root.history;
+    this.counterMoves = root.counterMoves;
+    this.quiescenceMoves = newQuiescenceMoves(board);
+    this.lineCells = new int[2 * board.K - 1];
+    this.candidateCells = new int[board.SIZE];
+    this.moveLists = new int[board.SIZE + 1][];
+    this.timeManager = root.timeManager;
+    this.aspirationWindow = root.aspirationWindow;
+    this.splitNodes = null;
+  }
+
+  /**
+   * Sets the pool used to search in parallel (Young Brothers Wait).
+   *
+   * @param pool fork/join pool, null to search serially
+   */
+  public void setPool(ForkJoinPool pool) { this.pool = pool; }
+
+  /**
+   * Prepares a new search on the board.
+   * <p>It must be called by the thread that may later call
+   * {@link #stop()}, before the search is started: a stop requested after
+   * it is never lost, even if the search has not started yet.</p>
+   *
+   * @param timeManager time budget of the search, already started
+   */
+  public void prepare(TimeManager timeManager) {
+    this.timeManager = timeManager;
+    this.timeChecks = 0;
+    this.stopped = false;
+    this.nodes = 0;
+    this.splitNodes.set(0);
+    this.completedDepth = 0;
+    this.completedScore = 0;
+    this.moveAspirationSearches = 0;
+    this.moveAspirationResearches = 0;
+  }
+
+  /**
+   * Searches the best move on the board until the time given to
+   * {@link #prepare(TimeManager)} runs out or {@link #stop()} is called.
+   *
+   * @return index of the best cell move, -1 if none was found in time
+   */
+  public int search() {
+    ageHistory();
+    return iterativeDeepening(board);
+  }
+
+  /**
+   * Stops the running search (it can be called from any thread).
+   *
+   * Time complexity: O(1)
+   */
+  public void stop() { this.stopped = true; }
+
+  /** Returns the board the search runs on. */
+  public Board getBoard() { return board; }
+
+  /** Returns the nodes visited by the last search (split workers too). */
+  public long getNodes() { return nodes + splitNodes.get(); }
+
+  /** Returns the last depth completed by the last search. */
+  public int getCompletedDepth() { return completedDepth; }
+
+  /** Returns the score of the last depth completed by the last search. */
+  public int getCompletedScore() { return completedScore; }
+
+  /**
+   * Copies the root moves of the last search, best first, as sorted by
+   * the scores of its last iteration.
+   *
+   * @param out array where to store the moves, at most out.length
+   * @return number of moves stored
+   */
+  public int getRootMoves(int[] out) {
+    if (rootMoves == null) return 0;
+    int count = Math.min(out.length, rootMoves.length);
+    System.arraycopy(rootMoves, 0, out, 0, count);
+    return count;
+  }
+
+  /** Returns the aspiration searches done in this game. */
+  public int getAspirationSearches() { return aspirationSearches; }
+
+  /** Returns the aspiration searches that had to be repeated. */
+  public int getAspirationResearches() { return aspirationResearches; }
+
+  /** Returns the aspiration searches done by the last search. */
+  public int getMoveAspirationSearches() { return moveAspirationSearches; }
+
+  /** Returns the aspiration searches of the last search repeated. */
+  public int getMoveAspirationResearches() {
+    return moveAspirationResearches;
+  }
+
+  /**
+   * Calls alpha beta (or MTD(f), see {@link Settings#MTDF}) by increasing
+   * the depth until the time runs out.
+   * <p>A new depth is started only if the time manager expects it to end
+   * in time, and no depth is started after a win or a loss is proven.</p>
+   * <p>From the second iteration on, alpha beta starts with an aspiration
+   * window centred on the previous score (see
+   * {@link Settings#ASPIRATION_WINDOW}).</p>
+   * <p>When the time runs out during an iteration, its best move is still
+   * played if it was proven better than the previous best one, which is
+   * always searched first.</p>
+   *
+   * @param board board to evaluate
+   * @return index of the best cell move, -1 if none was found in time
+   */
+  private int iterativeDeepening(Board board) {
+    int bestCell = -1;
+    int bestScore = 0;
+
+    int hashMove = transpositionTable.probe(board.hash, ttEntry)
+            ? ttEntry.move
+            : -1;
+    int[] moves = movesAt(board);
+    rootMoves = Arrays.copyOf(moves, sortMoves(board, hashMove, moves));
+    rootScores = new int[rootMoves.length];
+
+    // A forced move needs no search: it counts as a one ply search scored
+    // by the evaluation of the board after it
+    if (rootMoves.length == 1) {
+      board.markCell(rootMoves[0]);
+      completedScore = -evalSideToMove(board, 0);
+      board.unmarkCell();
+      completedDepth = 1;
+      return rootMoves[0];
+    }
+
+    // Helpers with an odd id skip the first depth, so that the threads do
+    // not all search the same iteration at the same time
+    int firstDepth = 1 + (id % 2);
+    if (firstDepth > board.getFreeCellsCount()) firstDepth = 1;
+
+    long lastNanos = 0, previousNanos = 0;
+    for (int depth = firstDepth; depth <= board.getFreeCellsCount(); depth++) {
+      if (completedDepth > 0
+              && !timeManager.canStartIteration(lastNanos, previousNanos))
+        break;
+
+      long iterationStart = System.nanoTime();
+      salvagedCell = -1;
+      int[] values;
+      if (Settings.MTDF)
+        values = mtdf(board, depth, bestScore);
+      else if (completedDepth > 0 && isAspirationUseful())
+        values = aspirationSearch(board, depth, bestScore);
+      else
+        values = alphaBetaAtRoot(
+                board, depth, INFINITY_NEGATIVE, INFINITY_POSITIVE);
+      int cell = values[0];
+      int score = values[1];
+
+      if (isTimeFinishing() || score == SAFETY_HALT) {
+        if (salvagedCell != -1) bestCell = salvagedCell;
+        break;
+      }
+
+      bestCell = cell;
+      bestScore = score;
+      completedDepth = depth;
+      completedScore = score;
+      previousNanos = lastNanos;
+      lastNanos = System.nanoTime() - iterationStart;
+
+      if (Math.abs(score) >= WINNING_SCORE) break;
+    }
+
+    return bestCell;
+  }
+
+  /**
+   * Checks if the aspiration windows are worth using: they are turned off
+   * for the rest of the game once more than half of them failed, since a
+   * failed search costs more than a full window one.
+   *
+   * Time complexity: O(1)
+   *
+   * @return true if the next iteration should use a window
+   */
+  private boolean isAspirationUseful() {
+    if (aspirationWindow <= 0) return false;
+    return aspirationSearches < ASPIRATION_MIN_SEARCHES
+            || aspirationResearches * 2 <= aspirationSearches;
+  }
+
+  /**
+   * Alpha-beta on the root with an aspiration window.
+   * <p>The search starts with a narrow window centred on the previous
+   * score. On a fail-low or fail-high the window is widened on that side,
+   * doubling its width each time, and the root is searched again.</p>
+   *
+   * @param board board to evaluate
+   * @param depth max reachable depth
+   * @param previousScore score of the previous iteration
+   * @return array containing bestCell with its bestScore
+   */
+  private int[] aspirationSearch(Board board, int depth, int previousScore) {
+    int delta = aspirationWindow;
+    int alpha = windowBound(previousScore, -delta);
+    int beta = windowBound(previousScore, delta);
+
+    aspirationSearches++;
+    moveAspirationSearches++;
+    while (true) {
+      int[] values = alphaBetaAtRoot(board, depth, alpha, beta);
+      int score = values[1];
+
+      if (score == SAFETY_HALT || isTimeFinishing()) return values;
+
+      if (score <= alpha && alpha > INFINITY_NEGATIVE)
+        alpha = windowBound(score, -delta);
+      else if (score >= beta && beta < INFINITY_POSITIVE)
+        beta = windowBound(score, delta);
+      else
+        return values;
+
+      aspirationResearches++;
+      moveAspirationResearches++;
+      delta *= 2;
+    }
+  }
+
+  /**
+   * Returns an aspiration window bound: <code>score + delta</code>, or an
+   * infinity if the window gets too large or the score is a win/loss.
+   *
+   * @param score centre of the window
+   * @param delta signed distance of the bound from the centre
+   * @return the window bound
+   */
+  private int windowBound(int score, int delta) {
+    if (Math.abs(score) >= WINNING_SCORE || Math.abs(delta) >= WINNING_SCORE)
+      return delta < 0 ? INFINITY_NEGATIVE : INFINITY_POSITIVE;
+    return score + delta;
+  }
+
+  /**
+   * MTD(f) execution on the root of the game tree.
+   * <p>It converges on the minimax value with a series of zero-window
+   * alphaBetaWithMemory calls, starting from the given guess. The
+   * transposition table keeps the bounds found by the previous calls, so
+   * each one re-searches a small part of the tree.</p>
+   *
+   * @param board board to evaluate
+   * @param depth max reachable depth (same meaning as in alphaBetaAtRoot)
+   * @param firstGuess expected score, usually the previous iteration one
+   * @return array containing bestCell with its bestScore
+   */
+  private int[] mtdf(Board board, int depth, int firstGuess) {
+    int bestCell = -1;
+    int score = firstGuess;
+    int lowerBound = INFINITY_NEGATIVE;
+    int upperBound = INFINITY_POSITIVE;
+
+    while (lowerBound < upperBound) {
+      int beta = score == lowerBound ? score + 1 : score;
+
+      // The root is our move: one ply more than the alphaBetaAtRoot children
+      score = alphaBetaWithMemory(board, depth + 1, beta - 1, beta);
+      if (score == SAFETY_HALT) break;
+
+      // A fail-high proves the score with the move stored at the root,
+      // a fail-low only gives a move if none was proven yet
+      boolean isFailHigh = score >= beta;
+      if ((isFailHigh || bestCell == -1)
+              && transpositionTable.probe(board.hash, ttEntry))
+        bestCell = ttEntry.move;
+
+      if (isFailHigh)
+        lowerBound = score;
+      else
+        upperBound = score;
+    }
+
+    return new int[] {bestCell, score};
+  }
+
+  /**
+   * Alpha-beta execution on the root of the game tree.
+   * <p>Each root move is searched with the window raised to the best score
+   * found so far. With PVS (see {@link Settings#PVS}) the moves after the
+   * first one are searched with a null window on the best score, and
+   * re-searched only if they fail high.</p>
+   * <p>The root moves are searched in the order left by the previous
+   * call, then sorted again by their new scores, best move first.</p>
+   *
+   * @param board board to evaluate
+   * @param depth max reachable depth
+   * @param alpha lower bound value
+   * @param beta upper bound value
+   * @return array containing bestCell with its bestScore: if the score is
+   *         outside (alpha, beta) it is only a bound
+   */
+  private int[] alphaBetaAtRoot(Board board, int depth, int alpha, int beta) {
+    int bestCell = -1;
+    int bestScore = INFINITY_NEGATIVE;
+    boolean isComplete = true;
+    Arrays.fill(rootScores, INFINITY_NEGATIVE);
+
+    int[] sortedMoves = rootMoves;
+    int movesCount = sortedMoves.length;
+    for (int k = 0; k < movesCount; k++) {
+      // Young brothers wait: the first move is searched serially
+      if (pool != null && k > 0) {
+        int[] values = searchSiblings(board, sortedMoves, k, movesCount,
+                depth, Math.max(alpha, bestScore), beta, bestCell, bestScore,
+                rootScores);
+        bestCell = values[0];
+        bestScore = values[1];
+        isComplete = bestScore != SAFETY_HALT;
+        if (bestCell != -1) salvagedCell = bestCell;
+        break;
+      }
+
+      int cell = sortedMoves[k];
+      int lower = Math.max(alpha, bestScore);
+      board.markCell(cell);
+      int score;
+      if (Settings.PVS && bestCell != -1) {
+        score = alphaBetaWithMemory(board, depth, -lower - 1, -lower);
+        if (score != SAFETY_HALT && -score > lower && -score < beta)
+          score = alphaBetaWithMemory(board, depth, -beta, -lower);
+      } else {
+        score = alphaBetaWithMemory(board, depth, -beta, -lower);
+      }
+      board.unmarkCell();
+
+      if (isTimeFinishing() || score == SAFETY_HALT) {
+        isComplete = false;
+        break;
+      }
+
+      // Scores are returned from the point of view of the opponent
+      score = -score;
+      rootScores[k] = score;
+      if (score > lower) salvagedCell = cell;
+      if (score > bestScore) {
+        bestScore = score;
+        bestCell = cell;
+      }
+
+      if (bestScore >= beta) break;
+    }
+
+    if (isComplete && bestCell != -1) {
+      Flag flag;
+      if (bestScore <= alpha)
+        flag = Flag.ALPHA;
+      else if (bestScore >= beta)
+        flag = Flag.BETA;
+      else
+        flag = Flag.EXACT;
+      transpositionTable.store(
+              board.hash, depth + 1, bestScore, flag, bestCell);
+    }
+
+    sortRootMoves(isComplete ? bestCell : salvagedCell);
+    return new int[] {bestCell, bestScore};
+  }
+
+  /**
+   * Sorts the root moves by their last scores, keeping the previous order
+   * of the moves with the same score (e.g. the ones not searched), and
+   * moves the given best move first.
+   *
+   * Time complexity: O(S^2) where S is the number of root moves
+   *
+   * @param bestCell best move, -1 if none
+   */
+  private void sortRootMoves(int bestCell) {
+    // Insertion sort: stable, and the moves are almost sorted already
+    for (int k = 1; k < rootMoves.length; k++) {
+      int cell = rootMoves[k], score = rootScores[k];
+      int h = k - 1;
+      while (h >= 0 && rootScores[h] < score) {
+        rootMoves[h + 1] = rootMoves[h];
+        rootScores[h + 1] = rootScores[h];
+        h--;
+      }
+      rootMoves[h + 1] = cell;
+      rootScores[h + 1] = score;
+    }
+
+    if (bestCell == -1) return;
+    int h = 0;
+    while (rootMoves[h] != bestCell) h++;
+    int bestScore = rootScores[h];
+    for (; h > 0; h--) {
+      rootMoves[h] = rootMoves[h - 1];
+      rootScores[h] = rootScores[h - 1];
+    }
+    rootMoves[0] = bestCell;
+    rootScores[0] = bestScore;
+  }
+
+  /**
+   * Implements AlphaBeta algorithm with transposition table, in negamax
+   * form: the score is always from the point of view of the player that
+   * has to move on the given board.
+   * <p>With PVS (see {@link Settings#PVS}) only the first move is searched
+   * with the full window, the others with a null window that is widened
+   * only when they fail high.</p>
+   * <p>The late moves are first searched with a reduced depth and a null
+   * window (see {@link Settings#LMR_MOVES}), and near the leaves the quiet
+   * moves of a node far below alpha are skipped (see
+   * {@link Settings#FUTILITY_MARGIN}). Winning and blocking moves are never
+   * reduced nor skipped.</p>
+   *
+   * @param board board to evaluate
+   * @param depth max reachable depth
+   * @param alpha lower bound value
+   * @param beta upper bound value
+   * @return best evaluated score, SAFETY_HALT if the time is over
+   */
+  private int alphaBetaWithMemory(Board board, int depth, int alpha, int beta) {
+    int hashMove = -1;
+
+    /**
+     * Transposition table lookup.
+     * The stored move is tried first even if the entry is not deep enough.
+     */
+    TTEntry entry = ttEntry;
+    if (transpositionTable.probe(board.hash, entry)) {
+      hashMove = entry.move;
+
+      if (entry.depth >= depth) {
+        if (entry.flag == Flag.EXACT)
+          return entry.score;
+        else if (entry.flag == Flag.BETA)
+          alpha = Math.max(alpha, entry.score);
+        else if (entry.flag == Flag.ALPHA)
+          beta = Math.min(beta, entry.score);
+        if (alpha >= beta) return entry.score;
+      }
+    }
+
+    nodes++;
+    if (isTimeFinishing()) return SAFETY_HALT;
+    if (!board.isGameOpen()) return evalSideToMove(board, depth);
+    if (depth <= 0) {
+      if (Settings.QUIESCENCE_NODES <= 0) return evalSideToMove(board, 0);
+      quiescenceBudget = Settings.QUIESCENCE_NODES;
+      return quiescence(board, 0, alpha, beta);
+    }
+
+    // Window actually searched, used to classify the result
+    int alphaOrig = alpha;
+    int betaOrig = beta;
+
+    int[] sortedCells = movesAt(board);
+    int movesCount = sortMoves(board, hashMove, sortedCells);
+    int eval = INFINITY_NEGATIVE;
+    int bestCell = -1;
+
+    // Futility pruning: a quiet move can't bring a frontier node that much
+    // below alpha back over it
+    boolean isFutile = Settings.FUTILITY_MARGIN > 0 && depth == 1
+            && evalSideToMove(board, depth) + Settings.FUTILITY_MARGIN <= alpha;
+
+    for (int k = 0; k < movesCount; k++) {
+      // PV nodes are split once their first move is searched, if some
+      // worker is idle
+      if (k > 0 && depth >= MIN_SPLIT_DEPTH && beta - alpha > 1
+              && isPoolIdle()) {
+        int[] values = searchSiblings(board, sortedCells, k, movesCount,
+                depth - 1, alpha, beta, bestCell, eval, null);
+        if (values[1] == SAFETY_HALT) return SAFETY_HALT;
+        bestCell = values[0];
+        eval = values[1];
+        break;
+      }
+
+      int cell = sortedCells[k];
+      boolean isLate = Settings.LMR_MOVES > 0 && k >= Settings.LMR_MOVES
+              && depth >= Settings.LMR_MIN_DEPTH;
+      // No move is a win or a block in one here: sortMoves returns only
+      // that move when there is one
+      if (isFutile && k > 0) continue;
+
+      int reduction = 0;
+      if (isLate)
+        reduction = k >= 3 * Settings.LMR_MOVES && depth > 4 ? 2 : 1;
+
+      board.markCell(cell);
+      int score = SAFETY_HALT;
+      // Late move reduction, verified at full depth if it beats alpha
+      if (reduction > 0)
+        score = alphaBetaWithMemory(
+                board, depth - 1 - reduction, -alpha - 1, -alpha);
+      if (reduction == 0 || (score != SAFETY_HALT && -score > alpha)) {
+        if (Settings.PVS && bestCell != -1) {
+          score = alphaBetaWithMemory(board, depth - 1, -alpha - 1, -alpha);
+          if (score != SAFETY_HALT && -score > alpha && -score < beta)
+            score = alphaBetaWithMemory(board, depth - 1, -beta, -alpha);
+        } else {
+          score = alphaBetaWithMemory(board, depth - 1, -beta, -alpha);
+        }
+      }
+      board.unmarkCell();
+
+      // The result of an interrupted search must not be stored
+      if (score == SAFETY_HALT) return SAFETY_HALT;
+
+      score = -score;
+      if (score > eval) {
+        eval = score;
+        bestCell = cell;
+      }
+
+      alpha = Math.max(alpha, eval);
+      if (alpha >= beta) {
+        if (cell != hashMove) updateHeuristics(board, cell, depth);
+        break;
+      }
+    }
+
+    /*
+     * Traditional transposition table storing of bounds.
+     */
+    Flag flag;
+    if (eval <= alphaOrig)
+      flag = Flag.ALPHA;
+    else if (eval >= betaOrig)
+      flag = Flag.BETA;
+    else
+      flag = Flag.EXACT;
+    transpositionTable.store(board.hash, depth, eval, flag, bestCell);
+
+    return eval;
+  }
+
+  /**
+   * Quiescence search on the leaves of alpha-beta, in negamax form.
+   * <p>It expands only the moves that change the position at once: a win
+   * in one, the blocks of the opponent wins in one, and otherwise the
+   * moves that create a win in one (a K - 1 line). The side to move can
+   * stand on the static score, unless it has to block. The search stops
+   * when the position is quiet or when its node budget (see
+   * {@link Settings#QUIESCENCE_NODES}) runs out.</p>
+   *
+   * @param board board to evaluate
+   * @param ply distance from the alpha-beta leaf
+   * @param alpha lower bound value
+   * @param beta upper bound value
+   * @return score of the quiet position for the player to move
+   */
+  private int quiescence(Board board, int ply, int alpha, int beta) {
+    nodes++;
+    if (!board.isGameOpen()) return evalSideToMove(board, 0);
+
+    int side = board.currentPlayer();
+    int[] cells = quiescenceMoves[ply];
+
+    // A win in one ends the game
+    int win = board.getWinningCell(side);
+    if (win != -1) {
+      board.markCell(win);
+      int score = -evalSideToMove(board, 0);
+      board.unmarkCell();
+      return score;
+    }
+
+    int standPat = evalSideToMove(board, 0);
+    if (quiescenceBudget <= 0) return standPat;
+
+    // The wins in one of the opponent must be blocked, otherwise the
+    // side to move can stand pat or make a threat
+    int count = board.getWinningCells(1 - side, cells);
+    boolean isForced = count > 0;
+    int best = INFINITY_NEGATIVE;
+    if (!isForced) {
+      if (standPat >= beta) return standPat;
+      alpha = Math.max(alpha, standPat);
+      best = standPat;
+      count = collectThreats(board, side, cells);
+    }
+
+    for (int k = 0; k < count && quiescenceBudget > 0; k++) {
+      quiescenceBudget--;
+      board.markCell(cells[k]);
+      int score = -quiescence(board, ply + 1, -beta, -alpha);
+      board.unmarkCell();
+
+      if (score > best) best = score;
+      alpha = Math.max(alpha, best);
+      if (alpha >= beta) break;
+    }
+
+    return best == INFINITY_NEGATIVE ? standPat : best;
+  }
+
+  /**
+   * Collects the free cells that create a win in one for the given player
+   * together with its last moves: the free cells of the windows of K cells
+   * along a line, through one of the moves, holding K - 2 cells of the
+   * player and no cell of the opponent.
+   *
+   * Time complexity: O(K)
+   *
+   * @param board current board, with player to move
+   * @param player player to move
+   * @param out array where to store the cells
+   * @return number of cells in out
+   */
+  private int collectThreats(Board board, int player, int[] out) {
+    int count = 0;
+    int K = board.K;
+    int[] line = lineCells;
+    seenStamp++;
+
+    for (int age = 0; age < THREAT_LAST_MOVES; age++) {
+      int marked = board.getLastMarkedCell(player, age);
+      if (marked == -1) break;
+
+      int row = board.row(marked);
+      int column = board.column(marked);
+      for (Point direction : LINE_DIRECTIONS) {
+        // Cells of the line within K - 1 steps of the move, up to the
+        // first opponent cell on each side
+        int first = K - 1, last = K - 1;
+        line[K - 1] = marked;
+        for (int step = 1; step < K; step++) {
+          int x = row - direction.x * step, y = column - direction.y * step;
+          if (!board.isCellInBounds(x, y)) break;
+          int cell = board.index(x, y);
+          if (board.owner(cell) == 1 - player) break;
+          line[--first] = cell;
+        }
+        for (int step = 1; step < K; step++) {
+          int x = row + direction.x * step, y = column + direction.y * step;
+          if (!board.isCellInBounds(x, y)) break;
+          int cell = board.index(x, y);
+          if (board.owner(cell) == 1 - player) break;
+          line[++last] = cell;
+        }
+
+        // Slide a window of K cells, counting the free ones
+        int free = 0;
+        for (int k = first; k <= last; k++) {
+          if (board.isFree(line[k])) free++;
+          if (k - first >= K && board.isFree(line[k - K])) free--;
+          if (k - first < K - 1 || free != 2) continue;
+
+          for (int h = k - K + 1; h <= k; h++) {
+            int cell = line[h];
+            if (board.isFree(cell) && seen[cell] != seenStamp) {
+              seen[cell] = seenStamp;
+              out[count++] = cell;
+            }
+          }
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Allocates the moves of each ply of the quiescence search: each ply
+   * expands one node at least, so the budget bounds the plies.
+   *
+   * @param board board to search on
+   * @return the array of the moves of each ply
+   */
+  private static int[][] newQuiescenceMoves(Board board) {
+    int plies = Math.max(0, Settings.QUIESCENCE_NODES) + 1;
+    int moves = Math.max(THREAT_LAST_MOVES * 2 * Board.LINES * board.K,
+            board.SIZE);
+    return new int[plies][moves];
+  }
+
+  /**
+   * Evaluates the board from the point of view of the player that has to
+   * move on it, as required by the negamax search.
+   *
+   * @param board board to be evaluate
+   * @param depth depth reached
+   * @return the board score for the player to move
+   * @see Search#eval(Board, int)
+   */
+  private int evalSideToMove(Board board, int depth) {
+    int score = eval(board, depth);
+    return board.currentPlayer() == myPlayer ? score : -score;
+  }
+
+  /**
+   * It gives a score to the given board given, from our point of view.
+   *
+   * @param board board to be evaluate
+   * @param depth depth reached
+   * @return the board score
+   */
+  private int eval(Board board, int depth) {
+    MNKGameState state = board.gameState();
+
+    if (first) {
+      if (state.equals(myWinState))
+        return WINNING_SCORE + depth;
+      else if (state.equals(opponentWinState))
+        return LOSING_SCORE - depth;
+    } else {
+      if (state.equals(opponentWinState))
+        return LOSING_SCORE - depth;
+      else if (state.equals(myWinState))
+        return WINNING_SCORE + depth;
+    }
+
+    if (state.equals(MNKGameState.DRAW)) return DRAWING_SCORE + depth;
+
+    int lastMarked = board.getLastMarkedCell();
+    int evalLastMarked = new Eval(board, lastMarked).eval();
+    boolean isMine = board.owner(lastMarked) == myPlayer;
+
+    if (first)
+      return isMine ? evalLastMarked + depth : -evalLastMarked - depth;
+    else
+      return isMine ? -evalLastMarked - depth : +evalLastMarked + depth;
+  }
+
+  /**
+   * Sort the cells in a circular way (starting from up-left direction).
+   * The sorted cells are appended to <code>out</code> from
+   * <code>from</code>, skipping the ones already marked in
+   * <code>seen</code> and the ones that are not candidates.
+   *
+   * @param lastCell index of the last marked cell
+   * @param out array where to append the sorted moves
+   * @param from first free position of out
+   * @return the new number of moves in out
+   */
+  private int sortCellsInCircularWay(
+          Board board, int lastCell, int[] out, int from) {
+    int count = from;
+    int lastRow = board.row(lastCell);
+    int lastColumn = board.column(lastCell);
+    Point[] directions = DIRECTIONS;
+    // Bit d is set while the direction d is still in bounds
+    int validDirections = (1 << directions.length) - 1;
+
+    for (int i = 1; i <= board.K; i++) {
+      for (int d = 0; d < directions.length; d++) {
+        if ((validDirections & (1 << d)) == 0) continue;
+
+        int x = lastRow + directions[d].x * i;
+        int y = lastColumn + directions[d].y * i;
+
+        // If for the current value of "i" the cell is out of bounds of
+        // the board it will surely be for the following ones too,
+        // we can therefore mark this "direction" as invalid.
+        if (!board.isCellInBounds(x, y)) {
+          validDirections &= ~(1 << d);
+          continue;
+        }
+
+        // We check the status of the cell on the board,
+        // if this is a candidate then we insert it in the sorted cells
+        int cell = board.index(x, y);
+        if (board.isCandidate(cell) && seen[cell] != seenStamp) {
+          seen[cell] = seenStamp;
+          out[count++] = cell;
+        }
+      }
+
+      // If we have no more directions in which to move,
+      // it makes no sense to continue and therefore we
+      // can exit the for.
+      if (validDirections == 0) break;
+    }
+
+    // Sort the moves based on the board scores (stable, descending)
+    for (int k = from + 1; k < count; k++) {
+      int cell = out[k];
+      int score = board.getCellScore(cell);
+      int h = k - 1;
+      while (h >= from && board.getCellScore(out[h]) < score) {
+        out[h + 1] = out[h];
+        h--;
+      }
+      out[h + 1] = cell;
+    }
+
+    return count;
+  }
+
+  /**
+   * Sort the moves according to the state of the board.
+   * <p>In a forced position (a win in one of either player) the only move
+   * returned is the forced one. Otherwise the moves are the candidate
+   * cells of the board (see {@link Settings#CANDIDATE_RADIUS}), plus the
+   * hash, killer and counter moves.</p>
+   *
+   * Time complexity: O(C + K) where C is the number of candidate cells
+   *
+   * @param board current board
+   * @param hashMove best move stored in the transposition table, -1 if none
+   * @param sortedFreeCells array where to store the sorted cells, with room
+   *        for the candidate cells plus {@link #EXTRA_MOVES}
+   * @return the number of sorted cells
+   */
+  private int sortMoves(Board board, int hashMove, int[] sortedFreeCells) {
+    // The side to move takes its win in one, otherwise it must block the
+    // opponent one: any other move loses at once
+    int side = board.currentPlayer();
+    int forced = board.getWinningCell(side);
+    if (forced == -1) forced = board.getWinningCell(1 - side);
+    if (forced != -1) {
+      sortedFreeCells[0] = forced;
+      return 1;
+    }
+
+    int count = 0;
+
+    // A new stamp invalidates all the cells seen by the previous call
+    seenStamp++;
+
+    // The hash move is the most likely to cause a cutoff
+    if (hashMove != -1 && board.isFree(hashMove)) {
+      seen[hashMove] = seenStamp;
+      sortedFreeCells[count++] = hashMove;
+    }
+
+    // Then the moves that caused a cutoff in the sibling nodes, and the
+    // refutation of the last move
+    if (Settings.HISTORY_HEURISTICS) {
+      int[] plyKillers = killers[board.getMarkedCellsCount()];
+      for (int k = 0; k < KILLERS; k++)
+        count = addMove(board, plyKillers[k], sortedFreeCells, count);
+
+      int lastCell = board.getLastMarkedCell();
+      if (lastCell != -1)
+        count = addMove(board,
+                counterMoves[board.currentPlayer()][lastCell],
+                sortedFreeCells, count);
+    }
+    int neighbours = count;
+
+    // Cells around the last moves of each player, most recent first
+    for (int age = 0; age < SORTING_LAST_MOVES; age++) {
+      int myLastMarkedCell = board.getLastMarkedCell(myPlayer, age);
+      int opponentLastMarkedCell = board.getLastMarkedCell(opponentPlayer, age);
+
+      if (myLastMarkedCell != -1)
+        count = sortCellsInCircularWay(
+                board, myLastMarkedCell, sortedFreeCells, count);
+
+      if (opponentLastMarkedCell != -1)
+        count = sortCellsInCircularWay(
+                board, opponentLastMarkedCell, sortedFreeCells, count);
+    }
+
+    // The cells around the last moves that caused more cutoffs go first,
+    // the others keep their order
+    if (Settings.HISTORY_HEURISTICS) {
+      int[] sideHistory = history[board.currentPlayer()];
+      for (int k = neighbours + 1; k < count; k++) {
+        int cell = sortedFreeCells[k];
+        int score = sideHistory[cell];
+        int h = k - 1;
+        while (h >= neighbours && sideHistory[sortedFreeCells[h]] < score) {
+          sortedFreeCells[h + 1] = sortedFreeCells[h];
+          h--;
+        }
+        sortedFreeCells[h + 1] = cell;
+      }
+    }
+
+    // Append the remaining candidate cells: the free cells far from all
+    // the stones are not searched
+    int candidates = board.getCandidates(candidateCells);
+    for (int k = 0; k < candidates; k++)
+      if (seen[candidateCells[k]] != seenStamp)
+        sortedFreeCells[count++] = candidateCells[k];
+
+    // Helpers swap the first move after the hash move with a close one, so
+    // each thread explores the tree in a slightly different order
+    if (id > 0) {
+      int start = hashMove != -1 && sortedFreeCells[0] == hashMove ? 1 : 0;
+      int range = Math.min(count - start, board.K);
+      if (range > 1) {
+        int other = start + id % range;
+        int tmp = sortedFreeCells[start];
+        sortedFreeCells[start] = sortedFreeCells[other];
+        sortedFreeCells[other] = tmp;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the moves array of the ply of the board, large enough for its
+   * moves (see {@link #sortMoves(Board, int, int[])}).
+   *
+   * Time complexity: O(1), O(C) when it is allocated
+   *
+   * @param board current board
+   * @return the moves array
+   */
+  private int[] movesAt(Board board) {
+    int ply = board.getMarkedCellsCount();
+    int size = board.getCandidatesCount() + EXTRA_MOVES;
+    int[] moves = moveLists[ply];
+    if (moves == null || moves.length < size) {
+      // Room to grow, as the stones bring more candidates
+      moves = new int[Math.min(2 * size, board.SIZE + EXTRA_MOVES)];
+      moveLists[ply] = moves;
+    }
+    return moves;
+  }
+
+  /**
+   * Appends the given move to <code>out</code> if it is free and not
+   * already there.
+   *
+   * Time complexity: O(1)
+   *
+   * @param board current board
+   * @param cell index of the move, -1 if none
+   * @param out array where to append the move
+   * @param count number of moves in out
+   * @return the new number of moves in out
+   */
+  private int addMove(Board board, int cell, int[] out, int count) {
+    if (cell == -1 || !board.isFree(cell) || seen[cell] == seenStamp)
+      return count;
+    seen[cell] = seenStamp;
+    out[count] = cell;
+    return count + 1;
+  }
+
+  /**
+   * Records a move that caused a beta cutoff in the killer, history and
+   * counter-move tables.
+   *
+   * Time complexity: O(1), O(M * N) when the history scores are halved
+   *
+   * @param board board of the node, before the move
+   * @param cell move that caused the cutoff
+   * @param depth remaining depth of the node
+   */
+  private void updateHeuristics(Board board, int cell, int depth) {
+    if (!Settings.HISTORY_HEURISTICS) return;
+
+    int[] plyKillers = killers[board.getMarkedCellsCount()];
+    if (plyKillers[0] != cell) {
+      for (int k = KILLERS - 1; k > 0; k--) plyKillers[k] = plyKillers[k - 1];
+      plyKillers[0] = cell;
+    }
+
+    int side = board.currentPlayer();
+    int lastCell = board.getLastMarkedCell();
+    if (lastCell != -1) counterMoves[side][lastCell] = cell;
+
+    // Deeper cutoffs prune larger subtrees
+    history[side][cell] += depth * depth;
+    if (history[side][cell] > MAX_HISTORY) ageHistory();
+  }
+
+  /**
+   * Halves the history scores, so that the recent cutoffs weigh more than
+   * the ones of the previous moves.
+   *
+   * Time complexity: O(M * N)
+   */
+  private void ageHistory() {
+    for (int[] side : history)
+      for (int cell = 0; cell < side.length; cell++) side[cell] >>= 1;
+  }
+
+  /**
+   * Check if the time is running out.
+   *
+   * @return true if the search was stopped, a split point it works for
+   *         was cut off or the hard time limit has been reached, false
+   *         otherwise
+   */
+  private boolean isTimeFinishing() {
+    if (root.stopped || (split != null && split.isCutoff())) return true;
+
+    // The clock is read only once in a while, stopping all the threads of
+    // the search once the limit is reached
+    if (++timeChecks < TIME_CHECK_INTERVAL) return false;
+    timeChecks = 0;
+    if (timeManager.isHardLimitReached()) root.stop();
+    return root.stopped;
+  }
+
+  /**
+   * Searches in parallel the moves of a node from <code>from</code> to
+   * <code>to</code>, after the previous ones were searched serially.
+   * <p>Each move is searched by a split worker on a copy of the board,
+   * which is left untouched until all the workers are done. When a move
+   * causes a cutoff the workers still running are stopped.</p>
+   *
+   * @param board board of the node
+   * @param moves sorted moves of the node
+   * @param from first move to search
+   * @param to end of the moves to search (exclusive)
+   * @param childDepth depth of the search of each move
+   * @param alpha lower bound value
+   * @param beta upper bound value
+   * @param bestCell best move searched so far
+   * @param bestScore score of the best move searched so far
+   * @param scores array where to store the score of each move searched,
+   *        by its index in moves, null if not needed
+   * @return array containing bestCell with its bestScore, SAFETY_HALT as
+   *         score if the search was stopped before a cutoff (then bestCell
+   *         is the move that raised alpha, -1 if none did)
+   */
+  private int[] searchSiblings(Board board, int[] moves, int from, int to,
+          int childDepth, int alpha, int beta, int bestCell, int bestScore,
+          int[] scores) {
+    SplitPoint point = new SplitPoint(this, board, childDepth, alpha, beta,
+            bestCell, bestScore, scores);
+    List<SiblingTask> tasks = new ArrayList<>(to - from);
+    for (int k = from; k < to; k++)
+      tasks.add(new SiblingTask(point, moves, k));
+
+    if (ForkJoinTask.inForkJoinPool())
+      ForkJoinTask.invokeAll(tasks);
+    else
+      pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          ForkJoinTask.invokeAll(tasks);
+        }
+      });
+
+    // A stopped search still returns the move that raised alpha, if any
+    if (!point.cutoff && (point.halted || isTimeFinishing()))
+      return new int[] {point.bestScore > alpha ? point.bestCell : -1,
+              SAFETY_HALT};
+    return new int[] {point.bestCell, point.bestScore};
+  }
+
+  /**
+   * Checks if the pool can take more work.
+   *
+   * @return true if some worker of the pool is idle, false otherwise or if
+   *         the search is serial
+   */
+  private boolean isPoolIdle() {
+    if (pool == null) return false;
+    if (ForkJoinTask.inForkJoinPool())
+      return ForkJoinTask.getSurplusQueuedTaskCount() <= 0
+              && pool.getActiveThreadCount() < pool.getParallelism();
+    return pool.getActiveThreadCount() < pool.getParallelism();
+  }
+
+  /**
+   * Node whose moves are searched in parallel: its best score is the alpha
+   * bound shared by the split workers.
+   */
+  private static final class SplitPoint {
+    /** Search that split the node. */
+    final Search search;
+    /** Board of the node, read only while the workers run. */
+    final Board board;
+    /** Depth of the search of each move. */
+    final int childDepth;
+    /** Lower and upper bound values of the node. */
+    final int alpha, beta;
+    /** Best move searched so far, with its score. */
+    volatile int bestCell, bestScore;
+    /** Set when a move reaches beta: the other moves are not needed. */
+    volatile boolean cutoff;
+    /** Set when a move was stopped before its search ended. */
+    volatile boolean halted;
+    /** Scores of the searched moves by index, null if not needed. */
+    final int[] scores;
+
+    SplitPoint(Search search, Board board, int childDepth, int alpha,
+            int beta, int bestCell, int bestScore, int[] scores) {
+      this.search = search;
+      this.scores = scores;
+      this.board = board;
+      this.childDepth = childDepth;
+      this.alpha = alpha;
+      this.beta = beta;
+      this.bestCell = bestCell;
+      this.bestScore = bestScore;
+    }
+
+    /** Returns the current lower bound of the moves still to search. */
+    int lower() { return Math.max(alpha, bestScore); }
+
+    /**
+     * Records the score of a searched move.
+     *
+     * @param cell searched move
+     * @param score score of the move, from the point of view of the node
+     */
+    synchronized void update(int cell, int score) {
+      if (score > bestScore) {
+        bestScore = score;
+        bestCell = cell;
+      }
+      if (bestScore >= beta) cutoff = true;
+    }
+
+    /**
+     * Checks if this split point, or one of the split points its search
+     * works for, was cut off.
+     *
+     * Time complexity: O(nested split points)
+     */
+    boolean isCutoff() {
+      for (SplitPoint point = this; point != null; point = point.search.split)
+        if (point.cutoff) return true;
+      return false;
+    }
+  }
+
+  /**
+   * Search of a move of a split point, on a copy of its board: the split
+   * workers and their boards are kept by the pool threads and reused by
+   * their next tasks.
+   */
+  private static final class SiblingTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final SplitPoint point;
+    private final int cell;
+    /** Index of the move in the moves of the split point. */
+    private final int index;
+
+    SiblingTask(SplitPoint point, int[] moves, int index) {
+      this.point = point;
+      this.cell = moves[index];
+      this.index = index;
+    }
+
+    @Override
+    protected void compute() {
+      if (point.cutoff || point.search.isTimeFinishing()) {
+        point.halted = true;
+        return;
+      }
+
+      Search root = point.search.root;
+      ArrayDeque<Search> workers = root.workers.get();
+      Search worker = workers.poll();
+      if (worker == null)
+        worker = new Search(root, new Board(point.board));
+      else
+        worker.board.copyFrom(point.board);
+      worker.split = point;
+      worker.timeManager = root.timeManager;
+      worker.timeChecks = 0;
+      worker.nodes = 0;
+
+      try {
+        search(worker);
+      } finally {
+        worker.split = null;
+        workers.push(worker);
+      }
+    }
+
+    /**
+     * Searches the move on the board of the given worker, a copy of the
+     * board of the split point.
+     *
+     * @param worker split worker of the current thread
+     */
+    private void search(Search worker) {
+      Board board = worker.board;
+      int depth = point.childDepth;
+      int beta = point.beta;
+      int lower = point.lower();
+      board.markCell(cell);
+      int score;
+      if (Settings.PVS) {
+        score = worker.alphaBetaWithMemory(board, depth, -lower - 1, -lower);
+        if (score != SAFETY_HALT && -score > lower && -score < beta) {
+          // Another move may have raised the bound in the meantime
+          lower = Math.max(lower, point.lower());
+          if (lower < beta)
+            score = worker.alphaBetaWithMemory(board, depth, -beta, -lower);
+        }
+      } else {
+        score = worker.alphaBetaWithMemory(board, depth, -beta, -lower);
+      }
+
+      worker.root.splitNodes.addAndGet(worker.nodes);
+      if (score == SAFETY_HALT) {
+        point.halted = true;
+      } else {
+        // Each task writes only its own index, read after the join
+        if (point.scores != null) point.scores[index] = -score;
+        point.update(cell, -score);
+      }
+    }
+  }
+}
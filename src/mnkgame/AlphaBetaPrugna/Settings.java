@@ -0,0 +1,150 @@
+package mnkgame.AlphaBetaPrugna;
+
+/**
+ * Tunable parameters of the player.
+ *
+ * <p>Each value can be overridden when starting the JVM with
+ * <code>-D&lt;property&gt;=&lt;value&gt;</code>, e.g.
+ * <code>java -Dprugna.tt.mb=128 mnkgame.MNKPlayerTester ...</code></p>
+ */
+public final class Settings {
+  private Settings() {}
+
+  /** Memory budget of the transposition table, in megabytes. */
+  public static final int TT_SIZE_MB = Integer.getInteger("prugna.tt.mb", 32);
+
+  /**
+   * Percentage of the round that the {@link SolverPlayer} spends proving
+   * the position before falling back to alpha-beta.
+   */
+  public static final int SOLVER_SHARE =
+          Integer.getInteger("prugna.solver.share", 50);
+
+  /** Memory budget of the table of the proof-number solver, in megabytes. */
+  public static final int SOLVER_SIZE_MB =
+          Integer.getInteger("prugna.solver.mb", 32);
+
+  /**
+   * Use MTD(f) instead of the full-window alpha-beta at each iterative
+   * deepening step.
+   */
+  public static final boolean MTDF = Boolean.getBoolean("prugna.mtdf");
+
+  /**
+   * Use Principal Variation Search: the moves after the first one are
+   * searched with a null window and re-searched only when they fail high.
+   */
+  public static final boolean PVS = Boolean.getBoolean("prugna.pvs");
+
+  /**
+   * Order the moves with the killer, history and counter-move heuristics,
+   * learnt from the cutoffs of the search.
+   */
+  public static final boolean HISTORY_HEURISTICS = Boolean.parseBoolean(
+          System.getProperty("prugna.history", "true"));
+
+  /**
+   * Late move reductions: the moves after the first LMR_MOVES ones of a
+   * node are searched one ply shallower (two for the very late ones) with
+   * a null window, and again at full depth only if they beat alpha; 0 to
+   * disable them.
+   */
+  public static final int LMR_MOVES = Integer.getInteger("prugna.lmr", 4);
+
+  /** Min remaining depth of the nodes whose late moves are reduced. */
+  public static final int LMR_MIN_DEPTH =
+          Integer.getInteger("prugna.lmr.depth", 3);
+
+  /**
+   * Futility pruning: at one ply from the leaves, the quiet moves of a node
+   * whose score is more than this margin below alpha are skipped; 0 to
+   * disable it.
+   */
+  public static final int FUTILITY_MARGIN =
+          Integer.getInteger("prugna.futility", 0);
+
+  /**
+   * Node budget of the threat quiescence search run at each leaf of
+   * alpha-beta; 0 to evaluate the leaves directly.
+   */
+  public static final int QUIESCENCE_NODES =
+          Integer.getInteger("prugna.qnodes", 32);
+
+  /**
+   * Half width of the aspiration window used by iterative deepening around
+   * the previous score, for K = 5 (it grows with K, like the scores), 0 to
+   * always search with a full window.
+   */
+  public static final int ASPIRATION_WINDOW =
+          Integer.getInteger("prugna.aspiration", 150);
+
+  /**
+   * Max distance, in rows and columns, from a stone of the cells that the
+   * alpha-beta search tries as moves (the candidate cells of the
+   * {@link Board}); 0 to try all the free cells.
+   */
+  public static final int CANDIDATE_RADIUS =
+          Integer.getInteger("prugna.candidates.radius", 2);
+
+  /**
+   * Time given to the threat-space search (forced wins made of threats
+   * only) before the alpha-beta search of each move, in milliseconds; 0 to
+   * disable it. It never takes more than a tenth of the move time.
+   */
+  public static final int THREAT_SEARCH_MS =
+          Integer.getInteger("prugna.threats.ms", 50);
+
+  /**
+   * Number of threads searching each move (Lazy SMP): the helper threads
+   * search the same position on their own boards and share the results
+   * only through the transposition table.
+   */
+  public static final int THREADS =
+          Math.max(1, Integer.getInteger("prugna.threads", 1));
+
+  /**
+   * With more than one thread, split the search tree among them with the
+   * Young Brothers Wait rule (see {@link Search}) instead of running the
+   * Lazy SMP helpers.
+   */
+  public static final boolean YBW = Boolean.getBoolean("prugna.ybw");
+
+  /**
+   * Ponder: after each move keep searching, on a background thread, the
+   * opponent reply predicted by the transposition table, until the next
+   * move is asked.
+   */
+  public static final boolean PONDER = Boolean.getBoolean("prugna.ponder");
+
+  /**
+   * Exploration constant of the UCB1 formula used by the
+   * {@link MonteCarloSearch}: larger values try more moves, smaller ones
+   * search deeper the best ones.
+   */
+  public static final double MCTS_EXPLORATION = Double.parseDouble(
+          System.getProperty("prugna.mcts.c", "1.0"));
+
+  /**
+   * Max distance (in rows and columns) from a stone of the cells that the
+   * {@link MonteCarloSearch} considers as moves and plays in the playouts.
+   */
+  public static final int MCTS_RADIUS =
+          Math.max(1, Integer.getInteger("prugna.mcts.radius", 2));
+
+  /**
+   * Max moves of a playout of the {@link MonteCarloSearch}: a longer game
+   * counts as a draw.
+   */
+  public static final int MCTS_PLAYOUT_MOVES =
+          Integer.getInteger("prugna.mcts.playout", 200);
+
+  /**
+   * Directory of the {@link OpeningBook} files, written by the
+   * {@link OpeningBookGenerator}; empty to play without book.
+   */
+  public static final String BOOK_DIR =
+          System.getProperty("prugna.book.dir", "books");
+
+  /** Print the search statistics of each move on the standard error. */
+  public static final boolean VERBOSE = Boolean.getBoolean("prugna.verbose");
+}
@@ -0,0 +1,112 @@
+package mnkgame.AlphaBetaPrugna;
+
+import mnkgame.AlphaBetaPrugna.ProofNumberSearch.Goal;
+import mnkgame.AlphaBetaPrugna.ProofNumberSearch.Result;
+import mnkgame.MNKCell;
+import mnkgame.MNKPlayer;
+
+/**
+ * Player that solves the game when it can.
+ *
+ * <p>At each move it spends part of the round (see
+ * {@link Settings#SOLVER_SHARE}) looking for a proven win with a
+ * proof-number search and, once the win is disproven, for a proven draw.
+ * When the position is not solved in time, the rest of the round goes to
+ * the alpha-beta {@link Player}. The solved positions are kept for the
+ * whole game, so after the first proof the next moves cost nothing.</p>
+ *
+ * <p>It is meant for the small and medium boards, whose value can be
+ * proven within the time of a move.</p>
+ */
+final public class SolverPlayer implements MNKPlayer {
+  /** Local board. */
+  private Board board;
+  /** Time budget of our rounds. */
+  private TimeManager timeManager;
+  /** Solver of the positions of the local board. */
+  private ProofNumberSearch solver;
+  /** Player used when the position is not solved. */
+  private final Player fallback;
+
+  /** Default empty constructor */
+  public SolverPlayer() { this.fallback = new Player(); }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void initPlayer(
+          int M, int N, int K, boolean first, int timeoutInSecs) {
+    this.board = new Board(M, N, K);
+    this.timeManager = new TimeManager(timeoutInSecs * 1000L);
+    this.solver = new ProofNumberSearch(board, Settings.SOLVER_SIZE_MB);
+    this.fallback.initPlayer(M, N, K, first, timeoutInSecs);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public MNKCell selectCell(MNKCell[] FC, MNKCell[] MC) {
+    long startTime = System.nanoTime();
+    timeManager.start(startTime);
+
+    // Update local board with the moves played since our last one
+    for (int k = board.getMarkedCellsCount(); k < MC.length; k++)
+      board.markCell(MC[k]);
+
+    // Last available move
+    if (FC.length == 1) return FC[0];
+
+    // The fallback gets the rest of the round, up to its own hard limit
+    long solverTime =
+            timeManager.getLimitMillis() * Settings.SOLVER_SHARE / 100;
+    int cell = solve(solverTime);
+    MNKCell selected = cell != -1
+            ? new MNKCell(board.row(cell), board.column(cell))
+            : fallback.selectCell(FC, MC, startTime);
+    board.markCell(selected);
+    timeManager.finish();
+
+    return selected;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String playerName() {
+    return "AlphaBetaPrugna Solver";
+  }
+
+  /**
+   * Looks for a move that wins, or at least draws, against any defence.
+   *
+   * @param solverTime time of the move after which the solver gives up, in
+   *        milliseconds
+   * @return index of the proven move, -1 if the position is lost or it
+   *         was not solved in time
+   */
+  private int solve(long solverTime) {
+    Result win = solver.solve(Goal.WIN, remaining(solverTime));
+    log("win", win);
+    if (win == Result.PROVEN) return solver.getProvenMove();
+    if (win == Result.UNKNOWN) return -1;
+
+    Result draw = solver.solve(Goal.DRAW, remaining(solverTime));
+    log("draw", draw);
+    return draw == Result.PROVEN ? solver.getProvenMove() : -1;
+  }
+
+  /** Returns the milliseconds left before the given time of the move. */
+  private long remaining(long solverTime) {
+    return Math.max(0, solverTime - timeManager.getElapsedMillis());
+  }
+
+  /** Prints the result of a proof on the standard error (if verbose). */
+  private void log(String goal, Result result) {
+    if (Settings.VERBOSE)
+      System.err.format("%s: %s %s, %d nodes\n", playerName(), goal,
+              result.toString().toLowerCase(), solver.getNodes());
+  }
+}
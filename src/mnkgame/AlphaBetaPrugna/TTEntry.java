@@ -1,5 +1,10 @@
 package mnkgame.AlphaBetaPrugna;
 
+/**
+ * Decoded transposition table entry.
+ * <p>It is filled by {@link TranspositionTable#probe(long, TTEntry)} and can
+ * be reused between probes, so no object is allocated per lookup.</p>
+ */
 public class TTEntry {
   public static enum Flag {
     /** means the value of the board was an EXACT score. */
@@ -19,16 +24,20 @@ public class TTEntry {
   /** Flag that describe the type of the score. */
   public Flag flag;
 
+  /** Index of the best cell found for the configuration, -1 if none. */
+  public int move;
+
   /** TTEntry default constructor. */
   public TTEntry() {
     this.depth = -1;
     this.score = -1;
     this.flag = null;
+    this.move = -1;
   }
 
   /** {@inheritDoc} */
   public String toString() {
-    return String.format(
-            "depth: %d, score: %d, flag: %s", depth, score, flag.toString());
+    return String.format("depth: %d, score: %d, flag: %s, move: %d", depth,
+            score, flag.toString(), move);
   }
 }
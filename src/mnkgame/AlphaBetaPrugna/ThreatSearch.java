@@ -0,0 +1,314 @@
+package mnkgame.AlphaBetaPrugna;
+
+import static mnkgame.AlphaBetaPrugna.Constants.DIRECTIONS;
+
+import mnkgame.MNKGameState;
+
+/**
+ * Threat-space search for the player to move.
+ *
+ * <p>It looks for forced wins made of threats only: each move of the
+ * attacker creates a winning cell (K - 1 symbols of a line and a free
+ * cell), so the defender has a single reply, until a move creates two
+ * winning cells at once. When the defender reply creates a threat too, the
+ * attacker must block it, and the sequence goes on only if the block is a
+ * threat itself. With such a small branching factor the search reaches
+ * forced wins far beyond the alpha-beta horizon in a few milliseconds.</p>
+ *
+ * <p>The search is run by iterative deepening on the number of threats, so
+ * the shortest win is found first. The board is left as it was found.</p>
+ */
+final public class ThreatSearch {
+  /** Board to search on, shared with the caller. */
+  private final Board board;
+  /** Stamp of the cells already added by the current candidates call. */
+  private final int[] seen;
+  /** Stamp of the current candidates call. */
+  private int seenStamp;
+  /**
+   * Table of the boards already proven not to be a win, with open
+   * addressing: zobrist key, max threats of the proof and stamp of the
+   * search that stored the entry (the entries of the previous searches
+   * are free).
+   */
+  private final long[] refutedKeys;
+  private final int[] refutedThreats, refutedStamps;
+  /** Stamp of the current search. */
+  private int searchStamp;
+  /**
+   * Moves of the positions on the search path, by ply: each array is
+   * allocated the first time its ply is reached, then reused.
+   */
+  private final int[][] moves;
+  /** Instant after which the search gives up, as given by nanoTime. */
+  private long deadline;
+  /** Set when the deadline is reached. */
+  private boolean timeOver;
+  /** Set when a sequence was cut by the current max number of threats. */
+  private boolean isDepthLimited;
+  /** Last winning cell found by winningCellsAround. */
+  private int winningCell;
+  /** Winning cells found by winningCellsAround. */
+  private final int[] winningCells;
+  /** Nodes visited by the last search. */
+  private long nodes;
+
+  /** Entries of the refuted table (a power of two). */
+  private static final int REFUTED_SIZE = 1 << 16;
+  /** Max entries probed by a lookup or a store of the refuted table. */
+  private static final int REFUTED_PROBES = 8;
+  /** How many nodes are visited between two time checks. */
+  private static final int TIME_CHECK_NODES = 256;
+
+  /**
+   * ThreatSearch constructor.
+   *
+   * @param board board to search on: it is modified during the search but
+   *        restored before returning
+   */
+  public ThreatSearch(Board board) {
+    this.board = board;
+    this.seen = new int[board.SIZE];
+    this.seenStamp = 0;
+    this.refutedKeys = new long[REFUTED_SIZE];
+    this.refutedThreats = new int[REFUTED_SIZE];
+    this.refutedStamps = new int[REFUTED_SIZE];
+    this.searchStamp = 0;
+    this.moves = new int[board.SIZE + 1][];
+    this.winningCells = new int[2 * Board.LINES];
+  }
+
+  /**
+   * Looks for the move that the player to move cannot avoid: a win in one,
+   * the block of an opponent win in one, or the first threat of a forced
+   * win.
+   *
+   * @param timeLimit max time of the search in milliseconds
+   * @return index of the move, -1 if there is none (or it was not found in
+   *         time)
+   */
+  public int search(long timeLimit) {
+    int attacker = board.currentPlayer();
+    this.deadline = System.nanoTime() + timeLimit * 1_000_000;
+    this.timeOver = false;
+    this.nodes = 0;
+
+    if (!board.isGameOpen()) return -1;
+
+    int win = board.getWinningCell(attacker);
+    if (win != -1) return win;
+
+    int block = board.getWinningCell(1 - attacker);
+    if (block != -1) return block;
+
+    searchStamp++;
+    int maxThreats = (board.getFreeCellsCount() + 1) / 2;
+    for (int threats = 1; threats <= maxThreats; threats++) {
+      isDepthLimited = false;
+      int cell = attack(attacker, threats, -1, 0);
+
+      if (cell != -1) return cell;
+      if (timeOver || !isDepthLimited) break;
+    }
+
+    return -1;
+  }
+
+  /** Returns the nodes visited by the last search. */
+  public long getNodes() { return nodes; }
+
+  /**
+   * Searches a sequence of at most <code>threats</code> threats winning
+   * for the attacker, who is to move.
+   *
+   * @param attacker player to move
+   * @param threats max number of threats of the sequence
+   * @param defenderMove last move of the defender, -1 at the root
+   * @param ply number of attacker moves played from the root
+   * @return index of the first move of the sequence, -1 if none was found
+   */
+  private int attack(int attacker, int threats, int defenderMove, int ply) {
+    nodes++;
+    if (isTimeOver()) return -1;
+
+    // A threat created by the defender reply must be blocked at once
+    int forced = -1;
+    if (defenderMove != -1) {
+      int defenderThreats = winningCellsAround(1 - attacker, defenderMove);
+      if (defenderThreats >= 2) return -1;
+      if (defenderThreats == 1) forced = winningCell;
+    }
+
+    if (threats == 0) {
+      isDepthLimited = true;
+      return -1;
+    }
+
+    if (getRefutedThreats(board.hash) >= threats) return -1;
+
+    int[] moves = movesAt(ply);
+    int count;
+    if (forced != -1) {
+      moves[0] = forced;
+      count = 1;
+    } else {
+      count = candidates(attacker, moves);
+    }
+
+    for (int k = 0; k < count; k++) {
+      int cell = moves[k];
+      int result = -1;
+      board.markCell(cell);
+      if (!board.isGameOpen()) {
+        if (board.gameState() != MNKGameState.DRAW) result = cell;
+      } else {
+        int attackerThreats = winningCellsAround(attacker, cell);
+        if (attackerThreats >= 2) {
+          result = cell;
+        } else if (attackerThreats == 1) {
+          // The defender has a single reply
+          int reply = winningCell;
+          board.markCell(reply);
+          if (board.isGameOpen()
+                  && attack(attacker, threats - 1, reply, ply + 1) != -1)
+            result = cell;
+          board.unmarkCell();
+        }
+      }
+      board.unmarkCell();
+
+      if (result != -1) return result;
+    }
+
+    if (!timeOver) putRefutedThreats(board.hash, threats);
+    return -1;
+  }
+
+  /**
+   * Returns the max threats with which the board was proven not to be a
+   * win in the current search.
+   *
+   * Time complexity: O(1)
+   *
+   * @param key zobrist key of the board
+   * @return max threats of the proof, 0 if the board was not refuted
+   */
+  private int getRefutedThreats(long key) {
+    for (int probe = 0; probe < REFUTED_PROBES; probe++) {
+      int slot = refutedSlot(key, probe);
+      if (refutedStamps[slot] != searchStamp) return 0;
+      if (refutedKeys[slot] == key) return refutedThreats[slot];
+    }
+    return 0;
+  }
+
+  /**
+   * Stores the max threats with which the board was proven not to be a
+   * win. When all the probed entries are taken the first one is replaced.
+   *
+   * Time complexity: O(1)
+   *
+   * @param key zobrist key of the board
+   * @param threats max threats of the proof
+   */
+  private void putRefutedThreats(long key, int threats) {
+    int slot = refutedSlot(key, 0);
+    for (int probe = 0; probe < REFUTED_PROBES; probe++) {
+      int candidate = refutedSlot(key, probe);
+      if (refutedStamps[candidate] != searchStamp
+              || refutedKeys[candidate] == key) {
+        slot = candidate;
+        break;
+      }
+    }
+
+    refutedKeys[slot] = key;
+    refutedThreats[slot] = threats;
+    refutedStamps[slot] = searchStamp;
+  }
+
+  /** Returns the entry of the refuted table probed for a key. */
+  private static int refutedSlot(long key, int probe) {
+    return ((int) (key ^ (key >>> 32)) + probe) & (REFUTED_SIZE - 1);
+  }
+
+  /**
+   * Returns the moves array of a ply, allocating it the first time.
+   *
+   * Time complexity: O(1), O(M * N) the first time
+   */
+  private int[] movesAt(int ply) {
+    if (moves[ply] == null) moves[ply] = new int[board.SIZE];
+    return moves[ply];
+  }
+
+  /**
+   * Counts the winning cells of the given player that go through the given
+   * marked cell. The last one found is saved in <code>winningCell</code>.
+   *
+   * Time complexity: O(K)
+   *
+   * @param player owner of the cell
+   * @param index index of the cell
+   * @return number of winning cells
+   */
+  private int winningCellsAround(int player, int index) {
+    int count = board.getWinningCellsThrough(player, index, winningCells, 0);
+    if (count > 0) winningCell = winningCells[count - 1];
+    return count;
+  }
+
+  /**
+   * Returns the free cells that can create a threat for the given player:
+   * the ones within K - 1 steps of its symbols along a line.
+   *
+   * Time complexity: O(P * K) where P is the number of cells of player
+   *
+   * @param player P1 or P2
+   * @param out array where to store the candidate cells
+   * @return number of candidate cells
+   */
+  private int candidates(int player, int[] out) {
+    int count = 0;
+    seenStamp++;
+
+    for (int age = 0;; age++) {
+      int marked = board.getLastMarkedCell(player, age);
+      if (marked == -1) break;
+
+      int row = board.row(marked);
+      int column = board.column(marked);
+      for (Point direction : DIRECTIONS) {
+        for (int step = 1; step < board.K; step++) {
+          int i = row + direction.x * step;
+          int j = column + direction.y * step;
+          if (!board.isCellInBounds(i, j)) break;
+
+          int cell = board.index(i, j);
+          int owner = board.owner(cell);
+          if (owner == 1 - player) break;
+          if (owner == Board.FREE && seen[cell] != seenStamp) {
+            seen[cell] = seenStamp;
+            out[count++] = cell;
+          }
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Check if the time is running out: the clock is read only every
+   * {@link #TIME_CHECK_NODES} nodes.
+   *
+   * Time complexity: O(1)
+   *
+   * @return true if the deadline has been reached, false otherwise
+   */
+  private boolean isTimeOver() {
+    if (!timeOver && nodes % TIME_CHECK_NODES == 0)
+      timeOver = System.nanoTime() - deadline > 0;
+    return timeOver;
+  }
+}
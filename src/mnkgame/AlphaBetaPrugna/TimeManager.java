@@ -0,0 +1,192 @@
+package mnkgame.AlphaBetaPrugna;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Time budget of the moves of a player.
+ *
+ * <p>The hard limit of a move is the round time minus a safety margin:
+ * the searches check it with <code>System.nanoTime</code> every few nodes
+ * and stop as soon as it is reached. The margin starts at 5% of the round
+ * and then follows the jitter measured at the end of each move: how late
+ * the move was returned after the hard limit (time checks, unwinding,
+ * scheduling) and how long the garbage collector ran during the move.
+ * Only the moves that ran a timed search are measured: the ones chosen
+ * without searching are never late. The margin never goes below a part of
+ * the round plus a constant, which covers the time the caller spends
+ * before the move starts and after it ends and the clock checks of the
+ * search, plus some time to join each helper thread.</p>
+ *
+ * <p>The soft limit decides whether a new iteration of the iterative
+ * deepening can start: its time is predicted from the time of the last
+ * iteration and the branching factor observed between the last two, and
+ * the iteration starts only if it is expected to end within the hard
+ * limit.</p>
+ */
+final public class TimeManager {
+  /** Round time in nanoseconds. */
+  private final long timeoutNanos;
+  /** Instant of the start of the current move. */
+  private long startNanos;
+  /** Hard limit of the current move, measured from its start. */
+  private long limitNanos;
+  /** Safety margin between the hard limit and the end of the round. */
+  private long marginNanos;
+  /** Decaying peak of the jitter measured at the end of the moves. */
+  private long peakJitterNanos;
+  /** Garbage collection time of the JVM at the start of the move. */
+  private long gcStartMillis;
+  /** Min margin, in nanoseconds. */
+  private final long minMarginNanos;
+  /** Set when the current move checked the hard limit. */
+  private boolean isTimed;
+
+  /** Margin of the first move, in percentage of the round. */
+  private static final int INITIAL_MARGIN_PERCENT = 5;
+  /** Max margin, in percentage of the round. */
+  private static final int MAX_MARGIN_PERCENT = 25;
+  /** Min margin: a part of the round, in percentage, plus a constant. */
+  private static final int MIN_MARGIN_PERCENT = 2;
+  private static final long MIN_MARGIN_MILLIS = 20;
+  /** Part of the min margin added for each helper thread. */
+  private static final long THREAD_MARGIN_MILLIS = 10;
+  /** How much of the peak jitter is forgotten at each move (1 / n). */
+  private static final int JITTER_DECAY = 8;
+  /** Branching factor assumed before two iterations are timed. */
+  private static final double DEFAULT_BRANCHING = 4;
+  /** Bounds of the observed branching factor. */
+  private static final double MIN_BRANCHING = 1.5, MAX_BRANCHING = 16;
+  /** Iterations shorter than this are not timed reliably. */
+  private static final long MIN_TIMED_NANOS = 1_000_000;
+
+  /**
+   * TimeManager constructor, for a single thread search.
+   *
+   * @param timeoutInMillis round time in milliseconds
+   */
+  public TimeManager(long timeoutInMillis) { this(timeoutInMillis, 1); }
+
+  /**
+   * TimeManager constructor.
+   *
+   * @param timeoutInMillis round time in milliseconds
+   * @param threads number of threads of the searches, joined at the end
+   *        of each move
+   */
+  public TimeManager(long timeoutInMillis, int threads) {
+    this.timeoutNanos = timeoutInMillis * 1_000_000;
+    long minMarginMillis =
+            MIN_MARGIN_MILLIS + THREAD_MARGIN_MILLIS * Math.max(0, threads - 1);
+    long minMargin = timeoutNanos * MIN_MARGIN_PERCENT / 100
+            + minMarginMillis * 1_000_000;
+    this.minMarginNanos =
+            Math.min(minMargin, timeoutNanos * MAX_MARGIN_PERCENT / 100);
+    this.marginNanos = Math.max(minMarginNanos,
+            timeoutNanos * INITIAL_MARGIN_PERCENT / 100);
+    this.limitNanos = timeoutNanos - marginNanos;
+  }
+
+  /**
+   * Starts the budget of a move.
+   *
+   * @param startNanos instant of the start of the round, as given by
+   *        <code>System.nanoTime</code>
+   */
+  public void start(long startNanos) {
+    this.startNanos = startNanos;
+    this.limitNanos = timeoutNanos - marginNanos;
+    this.gcStartMillis = gcMillis();
+    this.isTimed = false;
+  }
+
+  /**
+   * Starts a budget without hard limit, e.g. for pondering.
+   *
+   * @param startNanos instant of the start, as given by
+   *        <code>System.nanoTime</code>
+   */
+  public void startUnlimited(long startNanos) {
+    this.startNanos = startNanos;
+    this.limitNanos = Long.MAX_VALUE;
+    this.gcStartMillis = gcMillis();
+  }
+
+  /**
+   * Ends the budget of a move, adapting the margin of the next ones to
+   * the jitter measured during this one if it ran a timed search.
+   *
+   * Time complexity: O(1)
+   */
+  public void finish() {
+    if (limitNanos == Long.MAX_VALUE || !isTimed) return;
+
+    long lateness = Math.max(0, getElapsedNanos() - limitNanos);
+    long gc = (gcMillis() - gcStartMillis) * 1_000_000;
+    long jitter = Math.max(lateness, gc);
+    peakJitterNanos =
+            Math.max(jitter, peakJitterNanos - peakJitterNanos / JITTER_DECAY);
+
+    long margin = minMarginNanos + 2 * peakJitterNanos;
+    marginNanos = Math.min(margin, timeoutNanos * MAX_MARGIN_PERCENT / 100);
+  }
+
+  /**
+   * Checks if the hard limit of the move has been reached.
+   *
+   * Time complexity: O(1)
+   */
+  public boolean isHardLimitReached() {
+    isTimed = true;
+    return getElapsedNanos() >= limitNanos;
+  }
+
+  /**
+   * Checks if a new iteration is expected to end within the hard limit.
+   *
+   * Time complexity: O(1)
+   *
+   * @param lastNanos time of the last iteration
+   * @param previousNanos time of the iteration before the last one, 0 if
+   *        there is none
+   * @return true if the next iteration should start, false otherwise
+   */
+  public boolean canStartIteration(long lastNanos, long previousNanos) {
+    isTimed = true;
+    double branching = DEFAULT_BRANCHING;
+    if (previousNanos >= MIN_TIMED_NANOS)
+      branching = Math.min(MAX_BRANCHING,
+              Math.max(MIN_BRANCHING, (double) lastNanos / previousNanos));
+
+    double predicted = lastNanos * branching;
+    return getElapsedNanos() + predicted < limitNanos;
+  }
+
+  /** Returns the time elapsed since the start of the move, in nanoseconds. */
+  public long getElapsedNanos() { return System.nanoTime() - startNanos; }
+
+  /** Returns the time elapsed since the start of the move, in milliseconds. */
+  public long getElapsedMillis() { return getElapsedNanos() / 1_000_000; }
+
+  /** Returns the hard limit of the move in milliseconds. */
+  public long getLimitMillis() {
+    if (limitNanos == Long.MAX_VALUE) return Long.MAX_VALUE;
+    return limitNanos / 1_000_000;
+  }
+
+  /** Returns the current safety margin in milliseconds. */
+  public long getMarginMillis() { return marginNanos / 1_000_000; }
+
+  /**
+   * Returns the time spent by the JVM in garbage collection.
+   *
+   * Time complexity: O(G) where G is the number of garbage collectors
+   */
+  private static long gcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean gc :
+            ManagementFactory.getGarbageCollectorMXBeans())
+      total += Math.max(0, gc.getCollectionTime());
+    return total;
+  }
+}
@@ -0,0 +1,171 @@
+package mnkgame.AlphaBetaPrugna;
+
+import mnkgame.AlphaBetaPrugna.TTEntry.Flag;
+
+/**
+ * Fixed-size transposition table stored in primitive arrays.
+ *
+ * <p>The table is made of <code>2^n</code> buckets of two entries: the first
+ * one is replaced by deeper (or equal depth) searches and by any search once
+ * it is stale, the second one is always replaced. An entry is stale when it
+ * was stored during the search of a previous move, see
+ * {@link #newSearch()}. Each entry takes two longs: a data word with this
+ * layout, and the zobrist key xored with the data word.</p>
+ *
+ * <p>
+ *   <code>| used (1) | move (15) | generation (6) | flag (2) | depth (8)
+ *   | score (32) |</code>
+ * </p>
+ *
+ * <p>The move is stored as <code>index + 1</code>, so 0 means no move: on
+ * boards with more than <code>2^15 - 2</code> cells no move is stored.</p>
+ *
+ * <p>The table can be shared by several searching threads without locks:
+ * a hit is verified by xoring the two words back into the zobrist key, so
+ * an entry torn by two concurrent writes is seen as a miss instead of
+ * returning the data of another position.</p>
+ *
+ * <p>Nothing is allocated after the construction and the memory used never
+ * grows.</p>
+ */
+final public class TranspositionTable {
+  /** Number of entries of a bucket. */
+  private static final int BUCKET_SIZE = 2;
+  /** Bytes used by an entry (key and data). */
+  private static final int ENTRY_BYTES = 16;
+  /** Max depth that can be stored. */
+  private static final int MAX_DEPTH = 0xFF;
+
+  private static final int DEPTH_SHIFT = 32;
+  private static final int FLAG_SHIFT = 40;
+  private static final int GENERATION_SHIFT = 42;
+  private static final int GENERATION_MASK = 0x3F;
+  private static final int MOVE_SHIFT = 48;
+  private static final int MOVE_MASK = 0x7FFF;
+  /** Bit set in the data word of every stored entry. */
+  private static final long USED = 1L << 63;
+
+  /** Flags, indexed by ordinal. */
+  private static final Flag[] FLAGS = Flag.values();
+
+  /** Zobrist keys of the entries, xored with their data. */
+  private final long[] keys;
+  /** Packed data of the entries. */
+  private final long[] data;
+  /** Mask used to map a zobrist key to a bucket. */
+  private final int bucketMask;
+  /** Generation of the current search. */
+  private int generation;
+
+  /**
+   * TranspositionTable constructor.
+   * <p>The number of buckets is the largest power of two that fits in the
+   * given memory budget.</p>
+   *
+   * Time complexity: O(sizeInMB)
+   *
+   * @param sizeInMB memory budget in megabytes
+   */
+  public TranspositionTable(int sizeInMB) {
+    long entries = Math.max(1, (long) sizeInMB) * 1024 * 1024 / ENTRY_BYTES;
+    long buckets = Long.highestOneBit(Math.max(1, entries / BUCKET_SIZE));
+    buckets = Math.min(buckets, 1 << 29);
+
+    this.bucketMask = (int) buckets - 1;
+    this.keys = new long[(int) buckets * BUCKET_SIZE];
+    this.data = new long[(int) buckets * BUCKET_SIZE];
+    this.generation = 0;
+  }
+
+  /**
+   * Starts a new search generation: the entries stored so far become
+   * stale and are the first to be replaced, but can still be probed.
+   * It must be called before the search of each move.
+   *
+   * Time complexity: O(1)
+   */
+  public void newSearch() {
+    generation = (generation + 1) & GENERATION_MASK;
+  }
+
+  /**
+   * Looks up the given zobrist key.
+   *
+   * Time complexity: O(1)
+   *
+   * @param hash zobrist key of the board
+   * @param entry entry to fill in if the key is found
+   * @return true if the key was found, false otherwise
+   */
+  public boolean probe(long hash, TTEntry entry) {
+    int slot = bucket(hash);
+
+    for (int k = 0; k < BUCKET_SIZE; k++, slot++) {
+      long word = data[slot];
+      if (word != 0 && (keys[slot] ^ word) == hash) {
+        entry.score = (int) word;
+        entry.depth = (int) (word >>> DEPTH_SHIFT) & MAX_DEPTH;
+        entry.flag = FLAGS[(int) (word >>> FLAG_SHIFT) & 0x3];
+        entry.move = ((int) (word >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Stores a search result.
+   * <p>The result replaces the entry with the same key, otherwise the
+   * depth-preferred entry if it is stale or not deeper, otherwise the
+   * always-replace entry.</p>
+   *
+   * Time complexity: O(1)
+   *
+   * @param hash zobrist key of the board
+   * @param depth depth of the search
+   * @param score score of the board
+   * @param flag type of the score
+   * @param move index of the best cell found, -1 if none
+   */
+  public void store(long hash, int depth, int score, Flag flag, int move) {
+    int slot = bucket(hash);
+    depth = Math.min(depth, MAX_DEPTH);
+    if (move >= MOVE_MASK) move = -1;
+
+    long word = USED | (score & 0xFFFFFFFFL) | ((long) depth << DEPTH_SHIFT)
+            | ((long) flag.ordinal() << FLAG_SHIFT)
+            | ((long) generation << GENERATION_SHIFT)
+            | ((long) (move + 1) << MOVE_SHIFT);
+
+    long stored = data[slot];
+    boolean keepStored = (keys[slot] ^ stored) != hash && stored != 0
+            && !isStale(stored) && depth(stored) > depth;
+    if ((keys[slot + 1] ^ data[slot + 1]) == hash || keepStored) slot++;
+
+    keys[slot] = hash ^ word;
+    data[slot] = word;
+  }
+
+  /**
+   * Returns the number of entries of the table.
+   *
+   * Time complexity: O(1)
+   */
+  public int capacity() { return keys.length; }
+
+  /** Returns the first slot of the bucket of the given zobrist key. */
+  private int bucket(long hash) {
+    return ((int) (hash ^ (hash >>> 32)) & bucketMask) * BUCKET_SIZE;
+  }
+
+  /** Returns the depth stored in a data word. */
+  private static int depth(long word) {
+    return (int) (word >>> DEPTH_SHIFT) & MAX_DEPTH;
+  }
+
+  /** Checks if a data word was stored by a previous search. */
+  private boolean isStale(long word) {
+    return ((int) (word >>> GENERATION_SHIFT) & GENERATION_MASK) != generation;
+  }
+}
@@ -13,26 +13,34 @@ public class ZobristHash {
    * <p>The table entries have the following structure:</p>
    *
    * <p>
-   *   <code>[i]: cell_11  ...  cell_1n
-   *                ...    ...    ...
-   *              cell_1n  ...  cell_mn
-   *   </code>
+   *   <code>[i]: cell_11  ...  cell_1n  cell_21  ...  cell_mn</code>
    * <p>
    *
    * where the:
    * <ul>
    *   <li>[i] represent the i-th player index (0 or 1).</li>
    *   <li>cell_ij: represent the i-th row and j-th column of the cell in the
-   *       board (in this coordinates we store the random value of the i-th
-   *       player).
+   *       board, stored at the row-major index <code>i * N + j</code> (in
+   *       this coordinates we store the random value of the i-th player).
    *   </li>
    * </ul>
    */
-  final public long table[][][];
+  final public long table[][];
+
+  /** Number of columns of the board. */
+  final private int N;
+
+  /**
+   * Seed of the random values, mixed with the board size: the keys of a
+   * position are the same in every run, as needed by the
+   * {@link OpeningBook} files.
+   */
+  private static final long SEED = 0x5052554741L;
 
   /**
    * ZobristHash constructor.
-   * Create and initilize the Zobrist table with random long values.
+   * Create and initilize the Zobrist table with pseudo-random long values,
+   * the same for every board of the same size.
    *
    * <p>Time complexity:
    *    <code>Θ(2(M*N)) = Θ(M*N)<code>
@@ -43,8 +51,9 @@ public class ZobristHash {
    * @see ZobristHash#initZobrist(int, int)
    */
   public ZobristHash(int M, int N) {
-    this.random = new Random(System.currentTimeMillis());
-    this.table = new long[2][M][N];
+    this.random = new Random(SEED ^ ((long) M << 32 | N));
+    this.N = N;
+    this.table = new long[2][M * N];
     this.initZobrist(M, N);
   }
 
@@ -56,7 +65,21 @@ public class ZobristHash {
    * @return new zobrist key
    */
   public long updateZobrist(long zobrist, MNKCell cell) {
-    return zobrist ^ table[player(cell)][cell.i][cell.j];
+    return zobrist ^ table[player(cell)][cell.i * N + cell.j];
+  }
+
+  /**
+   * Calculate the new zobrist key.
+   *
+   * <p>Time complexity: <code>O(1)</code></p>
+   *
+   * @param zobrist old zobrist key
+   * @param player index of the player (0 or 1) that owns the cell
+   * @param index row-major index of the last marked/unmarked cell
+   * @return new zobrist key
+   */
+  public long updateZobrist(long zobrist, int player, int index) {
+    return zobrist ^ table[player][index];
   }
 
   /**
@@ -70,9 +93,8 @@ public class ZobristHash {
    */
   private void initZobrist(int M, int N) {
     for (int i = 0; i < 2; i++)
-      for (int row = 0; row < M; row++)
-        for (int col = 0; col < N; col++)
-          table[i][row][col] = this.random.nextLong();
+      for (int index = 0; index < M * N; index++)
+        table[i][index] = this.random.nextLong();
   }
 
   /**
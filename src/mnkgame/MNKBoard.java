@@ -32,8 +32,24 @@ import java.util.HashSet;
  * The MNKBoard class allows only alternates moves between two players. It
  * mantains the ordered
  * list of moves and allows undoes.
+ *
+ * <p>
+ * Free and marked cells can be tracked with two {@link Storage} modes. The
+ * default <code>COLLECTIONS</code> mode keeps them in the <code>FC</code> and
+ * <code>MC</code> collections. The <code>ARRAYS</code> mode keeps them in int
+ * arrays of cell indexes: <code>markCell</code> and <code>unmarkCell</code>
+ * are O(1) and do not allocate, and <code>MNKCell</code> objects are only
+ * created by <code>getFreeCells</code> and <code>getMarkedCells</code>.
  */
 public class MNKBoard {
+  /** Storage modes for the free and marked cells */
+  public enum Storage {
+    /** HashSet of free cells and LinkedList of marked cells */
+    COLLECTIONS,
+    /** Int arrays of free and marked cell indexes (row-major order) */
+    ARRAYS;
+  }
+
   /** Board rows */
   public final int M;
   /** Board columns */
@@ -45,8 +61,17 @@ public class MNKBoard {
   public final int K;
 
   protected final MNKCellState[][] B;
-  protected final LinkedList<MNKCell> MC; // Marked Cells
-  protected final HashSet<MNKCell> FC; // Free Cells
+  protected final LinkedList<MNKCell> MC; // Marked Cells (COLLECTIONS only)
+  protected final HashSet<MNKCell> FC; // Free Cells (COLLECTIONS only)
+
+  protected final Storage storage; // Free/marked cells storage mode
+
+  // ARRAYS storage: free cells with swap-remove, marked cells as a stack
+  private final int[] freeCells; // Free cell indexes
+  private final int[] freePosition; // Position of each cell in freeCells
+  private int freeCount; // Number of free cells
+  private final int[] markedCells; // Marked cell indexes, in game order
+  private int markedCount; // Number of marked cells
 
   private final MNKCellState[] Player = { MNKCellState.P1, MNKCellState.P2 };
 
@@ -64,6 +89,20 @@ public class MNKBoard {
    * @throws IllegalArgumentException If M,N,K are smaller than 1
    */
   public MNKBoard(int M, int N, int K) throws IllegalArgumentException {
+    this(M, N, K, Storage.COLLECTIONS);
+  }
+
+  /**
+   * Create a board of size MxN with the given free/marked cells storage
+   *
+   * @param M       Board rows
+   * @param N       Board columns
+   * @param K       Number of symbols to be aligned (horizontally, vertically,
+   *                diagonally) for a win
+   * @param storage How free and marked cells are stored
+   * @throws IllegalArgumentException If M,N,K are smaller than 1
+   */
+  public MNKBoard(int M, int N, int K, Storage storage) throws IllegalArgumentException {
     if (M <= 0)
       throw new IllegalArgumentException("M cannot be smaller than 1");
     if (N <= 0)
@@ -75,10 +114,23 @@ public class MNKBoard {
     this.N = N;
     this.K = K;
 
+    this.storage = storage;
+
     B = new MNKCellState[M][N];
-    // Initial capacity large enough to assure load factor < 0.75
-    FC = new HashSet<MNKCell>((int) Math.ceil((M * N) / 0.75));
-    MC = new LinkedList<MNKCell>();
+    if (storage == Storage.ARRAYS) {
+      FC = null;
+      MC = null;
+      freeCells = new int[M * N];
+      freePosition = new int[M * N];
+      markedCells = new int[M * N];
+    } else {
+      // Initial capacity large enough to assure load factor < 0.75
+      FC = new HashSet<MNKCell>((int) Math.ceil((M * N) / 0.75));
+      MC = new LinkedList<MNKCell>();
+      freeCells = null;
+      freePosition = null;
+      markedCells = null;
+    }
 
     reset();
   }
@@ -147,19 +199,29 @@ public class MNKBoard {
     } else if (B[i][j] != MNKCellState.FREE) {
       throw new IllegalStateException("Cell " + i + "," + j + " is not free");
     } else {
-      MNKCell oldc = new MNKCell(i, j, B[i][j]);
-      MNKCell newc = new MNKCell(i, j, Player[currentPlayer]);
+      if (storage == Storage.ARRAYS) {
+        int index = i * N + j;
+        int last = freeCells[--freeCount];
+
+        // Swap-remove the cell from the free cells
+        freeCells[freePosition[index]] = last;
+        freePosition[last] = freePosition[index];
+        markedCells[markedCount++] = index;
+      } else {
+        MNKCell oldc = new MNKCell(i, j, B[i][j]);
+        MNKCell newc = new MNKCell(i, j, Player[currentPlayer]);
+
+        FC.remove(oldc);
+        MC.add(newc);
+      }
 
       B[i][j] = Player[currentPlayer];
 
-      FC.remove(oldc);
-      MC.add(newc);
-
       currentPlayer = (currentPlayer + 1) % 2;
 
       if (isWinningCell(i, j))
         gameState = B[i][j] == MNKCellState.P1 ? MNKGameState.WINP1 : MNKGameState.WINP2;
-      else if (FC.isEmpty())
+      else if (freeCellsCount() == 0)
         gameState = MNKGameState.DRAW;
 
       return gameState;
@@ -172,8 +234,17 @@ public class MNKBoard {
    * @throws IllegalStateException If there is no move to undo
    */
   public void unmarkCell() throws IllegalStateException {
-    if (MC.size() == 0) {
+    if (markedCellsCount() == 0) {
       throw new IllegalStateException("No move to undo");
+    } else if (storage == Storage.ARRAYS) {
+      int index = markedCells[--markedCount];
+
+      B[index / N][index % N] = MNKCellState.FREE;
+
+      freePosition[index] = freeCount;
+      freeCells[freeCount++] = index;
+      currentPlayer = (currentPlayer + 1) % 2;
+      gameState = MNKGameState.OPEN;
     } else {
       MNKCell oldc = MC.removeLast();
       MNKCell newc = new MNKCell(oldc.i, oldc.j, MNKCellState.FREE);
@@ -197,7 +268,15 @@ public class MNKBoard {
    * @return List of marked cells
    */
   public MNKCell[] getMarkedCells() {
-    return MC.toArray(new MNKCell[MC.size()]);
+    if (storage == Storage.COLLECTIONS)
+      return MC.toArray(new MNKCell[MC.size()]);
+
+    MNKCell[] cells = new MNKCell[markedCount];
+    for (int k = 0; k < markedCount; k++) {
+      int i = markedCells[k] / N, j = markedCells[k] % N;
+      cells[k] = new MNKCell(i, j, B[i][j]);
+    }
+    return cells;
   }
 
   /**
@@ -209,7 +288,31 @@ public class MNKBoard {
    * @return List of free cells
    */
   public MNKCell[] getFreeCells() {
-    return FC.toArray(new MNKCell[FC.size()]);
+    if (storage == Storage.COLLECTIONS)
+      return FC.toArray(new MNKCell[FC.size()]);
+
+    MNKCell[] cells = new MNKCell[freeCount];
+    for (int k = 0; k < freeCount; k++)
+      cells[k] = new MNKCell(freeCells[k] / N, freeCells[k] % N);
+    return cells;
+  }
+
+  /**
+   * Returns the number of free cells.
+   *
+   * @return Number of free cells
+   */
+  public int freeCellsCount() {
+    return storage == Storage.ARRAYS ? freeCount : FC.size();
+  }
+
+  /**
+   * Returns the number of marked cells.
+   *
+   * @return Number of marked cells
+   */
+  public int markedCellsCount() {
+    return storage == Storage.ARRAYS ? markedCount : MC.size();
   }
 
   // Sets to free all board cells
@@ -221,6 +324,15 @@ public class MNKBoard {
 
   // Rebuilds the free cells set
   private void initFreeCellList() {
+    if (storage == Storage.ARRAYS) {
+      freeCount = M * N;
+      for (int index = 0; index < freeCount; index++) {
+        freeCells[index] = index;
+        freePosition[index] = index;
+      }
+      return;
+    }
+
     this.FC.clear();
     for (int i = 0; i < M; i++)
       for (int j = 0; j < N; j++)
@@ -229,6 +341,11 @@ public class MNKBoard {
 
   // Resets the marked cells list
   private void initMarkedCellList() {
+    if (storage == Storage.ARRAYS) {
+      markedCount = 0;
+      return;
+    }
+
     this.MC.clear();
   }
 
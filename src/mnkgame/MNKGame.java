@@ -83,7 +83,7 @@ public class MNKGame extends JFrame {
   /** Private constructor to setup the game and the GUI components */
   private MNKGame(int M, int N, int K, MNKGameType type) {
     gameType = type;
-    B = new MNKBoard(M, N, K);
+    B = new MNKBoard(M, N, K, MNKBoard.Storage.ARRAYS);
 
     GRID_WIDTH = CELL_SIZE / 10; // Grid-line's width
     GRID_WIDTH_HALF = GRID_WIDTH / 2; // Grid-line's half-width
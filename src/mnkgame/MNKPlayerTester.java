@@ -88,7 +88,7 @@ public class MNKPlayerTester {
   private static void initGame() {
     if (VERBOSE)
       System.out.println("Initializing " + M + "," + N + "," + K + " board");
-    B = new MNKBoard(M, N, K);
+    B = new MNKBoard(M, N, K, MNKBoard.Storage.ARRAYS);
     // Timed-out initializaton of the MNKPlayers
     for (int k = 0; k < 2; k++) {
       if (VERBOSE)
@@ -45,7 +45,7 @@ public class QuasiRandomPlayer implements MNKPlayer {
   public void initPlayer(int M, int N, int K, boolean first, int timeout_in_secs) {
     // New random seed for each game
     rand = new Random(System.currentTimeMillis());
-    B = new MNKBoard(M, N, K);
+    B = new MNKBoard(M, N, K, MNKBoard.Storage.ARRAYS);
     myWin = first ? MNKGameState.WINP1 : MNKGameState.WINP2;
     yourWin = first ? MNKGameState.WINP2 : MNKGameState.WINP1;
     TIMEOUT = timeout_in_secs;